@@ -0,0 +1,73 @@
+package com.bvan.mriqueue.benchmarks;
+
+import com.bvan.mriqueue.ConcurrentMostRecentlyInsertedQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills {@link ConcurrentMostRecentlyInsertedQueue} up to capacity and empties it
+ * by single polls or by batches of {@code batchSize} elements.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchPollBenchmark {
+
+    @Param({"1024", "65536"})
+    private int capacity;
+
+    @Param({"16", "256"})
+    private int batchSize;
+
+    private Integer[] values;
+    private Integer[] batch;
+    private ConcurrentMostRecentlyInsertedQueue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        values = Values.create();
+        batch = new Integer[batchSize];
+        queue = new ConcurrentMostRecentlyInsertedQueue<>(capacity);
+    }
+
+    @Benchmark
+    public void poll(Blackhole blackhole) {
+        fill();
+        Integer e;
+        while ((e = queue.poll()) != null) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void drain(Blackhole blackhole) {
+        fill();
+        while (queue.drain(blackhole::consume, batchSize) > 0) {
+            // consumed by blackhole
+        }
+    }
+
+    @Benchmark
+    public void pollBatch(Blackhole blackhole) {
+        fill();
+        int n;
+        while ((n = queue.pollBatch(batch)) > 0) {
+            for (int i = 0; i < n; i++) {
+                blackhole.consume(batch[i]);
+            }
+        }
+    }
+
+    private void fill() {
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(values[i & Values.MASK]);
+        }
+    }
+}
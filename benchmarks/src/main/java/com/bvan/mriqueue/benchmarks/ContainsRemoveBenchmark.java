@@ -0,0 +1,56 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches a full queue by {@code contains} and {@code remove(Object)}.
+ * {@code contains} looks for an absent element, so it always scans the whole queue.
+ * {@code remove} takes an element and offers it back to keep the size,
+ * so after the first invocation the element is found at the tail.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContainsRemoveBenchmark {
+
+    @Param({"MRI", "CONCURRENT_MRI", "BLOCKING_MRI",
+            "ARRAY_BLOCKING", "CONCURRENT_LINKED", "LINKED_BLOCKING"})
+    private QueueKind kind;
+
+    @Param({"16", "1024", "65536", "1048576", "10000000"})
+    private int capacity;
+
+    private final Integer absent = -1;
+    private Integer target;
+    private Queue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        Integer[] values = new Integer[capacity];
+        for (int i = 0; i < capacity; i++) {
+            values[i] = i;
+        }
+        target = values[capacity / 2];
+        queue = kind.createFull(capacity, values);
+    }
+
+    @Benchmark
+    public boolean containsAbsent() {
+        return queue.contains(absent);
+    }
+
+    @Benchmark
+    public boolean removeAndOffer() {
+        boolean removed = queue.remove(target);
+        queue.offer(target);
+        return removed;
+    }
+}
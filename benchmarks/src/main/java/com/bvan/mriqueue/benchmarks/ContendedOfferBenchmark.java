@@ -0,0 +1,47 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offers to one shared full queue from all benchmark threads, which are set by {@code -t N}.
+ * Compares the striped queue with the single-lock and the lock-free ones.
+ * With the small capacity the rings of stripes are small too, so stripes would share cache lines without padding.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContendedOfferBenchmark {
+
+    @Param({"CONCURRENT_MRI", "LOCK_FREE_MRI", "STRIPED_MRI_ORDERED", "STRIPED_MRI_APPROXIMATE"})
+    private QueueKind kind;
+
+    @Param({"16", "1024", "65536"})
+    private int capacity;
+
+    private Integer[] values;
+    private Queue<Integer> queue;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+    }
+
+    @Setup
+    public void setUp() {
+        values = Values.create();
+        queue = kind.createFull(capacity, values);
+    }
+
+    @Benchmark
+    public boolean offer(Cursor cursor) {
+        return queue.offer(values[cursor.i++ & Values.MASK]);
+    }
+}
@@ -0,0 +1,48 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a blocking queue up to capacity and drains it into a reused list.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DrainToBenchmark {
+
+    @Param({"BLOCKING_MRI", "ARRAY_BLOCKING", "LINKED_BLOCKING"})
+    private QueueKind kind;
+
+    @Param({"16", "1024", "65536", "1048576", "10000000"})
+    private int capacity;
+
+    private Integer[] values;
+    private BlockingQueue<Integer> queue;
+    private List<Integer> sink;
+
+    @Setup
+    public void setUp() {
+        values = Values.create();
+        queue = (BlockingQueue<Integer>) kind.<Integer>create(capacity);
+        sink = new ArrayList<>(capacity);
+    }
+
+    @Benchmark
+    public int fillAndDrainTo() {
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(values[i & Values.MASK]);
+        }
+        sink.clear();
+        return queue.drainTo(sink);
+    }
+}
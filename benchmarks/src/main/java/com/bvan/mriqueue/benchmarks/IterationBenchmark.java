@@ -0,0 +1,42 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterates over a full queue from head to tail.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IterationBenchmark {
+
+    @Param({"MRI", "CONCURRENT_MRI", "BLOCKING_MRI", "LOCK_FREE_MRI",
+            "ARRAY_BLOCKING", "CONCURRENT_LINKED", "LINKED_BLOCKING"})
+    private QueueKind kind;
+
+    @Param({"16", "1024", "65536", "1048576", "10000000"})
+    private int capacity;
+
+    private Queue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        queue = kind.createFull(capacity, Values.create());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Integer elem : queue) {
+            blackhole.consume(elem);
+        }
+    }
+}
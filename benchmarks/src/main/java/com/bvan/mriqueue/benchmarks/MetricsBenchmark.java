@@ -0,0 +1,77 @@
+package com.bvan.mriqueue.benchmarks;
+
+import com.bvan.mriqueue.ConcurrentMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.MostRecentlyInsertedBlockingQueue;
+import com.bvan.mriqueue.MostRecentlyInsertedQueue;
+import com.bvan.mriqueue.QueueMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offers to a full queue and polls from it with and without {@link QueueMetrics}.
+ * Disabled metrics aren't free: each recording point is a {@code null} check of the field,
+ * which costs about 1 ns per {@code offerPoll} of {@code MostRecentlyInsertedQueue}
+ * and is within error of the thread-safe queues. README has the numbers.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Param({"MRI", "CONCURRENT_MRI", "BLOCKING_MRI"})
+    private QueueKind kind;
+
+    @Param({"false", "true"})
+    private boolean metrics;
+
+    @Param({"1024"})
+    private int capacity;
+
+    private Integer[] values;
+    private Queue<Integer> queue;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+    }
+
+    @Setup
+    public void setUp() {
+        values = Values.create();
+        QueueMetrics queueMetrics = metrics ? new QueueMetrics() : null;
+        switch (kind) {
+            case MRI:
+                queue = new MostRecentlyInsertedQueue<>(capacity, null, queueMetrics);
+                break;
+            case CONCURRENT_MRI:
+                queue = new ConcurrentMostRecentlyInsertedQueue<>(capacity, null, queueMetrics);
+                break;
+            case BLOCKING_MRI:
+                queue = new MostRecentlyInsertedBlockingQueue<>(capacity, null, queueMetrics);
+                break;
+            default:
+                throw new IllegalArgumentException("kind isn't supported: " + kind);
+        }
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(values[i & Values.MASK]);
+        }
+    }
+
+    @Benchmark
+    public boolean offer(Cursor cursor) {
+        return queue.offer(values[cursor.i++ & Values.MASK]);
+    }
+
+    @Benchmark
+    public Integer offerPoll(Cursor cursor) {
+        queue.offer(values[cursor.i++ & Values.MASK]);
+        return queue.poll();
+    }
+}
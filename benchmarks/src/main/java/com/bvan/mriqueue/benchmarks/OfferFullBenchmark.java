@@ -0,0 +1,42 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offers into a full queue, i.e. the eviction path.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OfferFullBenchmark {
+
+    @Param({"MRI", "CONCURRENT_MRI", "BLOCKING_MRI", "LOCK_FREE_MRI", "SPSC_MRI", "MPSC_MRI",
+            "ARRAY_BLOCKING", "CONCURRENT_LINKED", "LINKED_BLOCKING"})
+    private QueueKind kind;
+
+    @Param({"16", "1024", "65536", "1048576", "10000000"})
+    private int capacity;
+
+    private Integer[] values;
+    private Queue<Integer> queue;
+    private int i;
+
+    @Setup
+    public void setUp() {
+        values = Values.create();
+        queue = kind.createFull(capacity, values);
+    }
+
+    @Benchmark
+    public void offer() {
+        kind.offerEvicting(queue, values[i++ & Values.MASK]);
+    }
+}
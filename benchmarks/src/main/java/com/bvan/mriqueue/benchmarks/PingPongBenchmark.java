@@ -0,0 +1,57 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two threads pass an element back and forth through a pair of queues,
+ * so every operation is an offer into one queue and a poll from another.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class PingPongBenchmark {
+
+    @Param({"CONCURRENT_MRI", "BLOCKING_MRI", "LOCK_FREE_MRI", "SPSC_MRI", "MPSC_MRI",
+            "ARRAY_BLOCKING", "CONCURRENT_LINKED", "LINKED_BLOCKING"})
+    private QueueKind kind;
+
+    @Param({"16", "1024"})
+    private int capacity;
+
+    private final Integer ball = 1;
+    private Queue<Integer> pingQueue;
+    private Queue<Integer> pongQueue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        pingQueue = kind.create(capacity);
+        pongQueue = kind.create(capacity);
+    }
+
+    @Benchmark
+    @Group("pingPong")
+    public void ping(Control control) {
+        pingQueue.offer(ball);
+        while (!control.stopMeasurement && pongQueue.poll() == null) {
+            // spin
+        }
+    }
+
+    @Benchmark
+    @Group("pingPong")
+    public void pong(Control control) {
+        while (!control.stopMeasurement && pingQueue.poll() == null) {
+            // spin
+        }
+        pongQueue.offer(ball);
+    }
+}
@@ -0,0 +1,57 @@
+package com.bvan.mriqueue.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * N producers offer into a shared queue while M consumers poll it.
+ * The thread distribution is 1 producer and 1 consumer by default,
+ * use {@code -tg N,M} to change it.
+ *
+ * @author bvanchuhov
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ProducersConsumersBenchmark {
+
+    @Param({"CONCURRENT_MRI", "BLOCKING_MRI", "LOCK_FREE_MRI",
+            "ARRAY_BLOCKING", "CONCURRENT_LINKED", "LINKED_BLOCKING"})
+    private QueueKind kind;
+
+    @Param({"16", "1024", "65536"})
+    private int capacity;
+
+    private Integer[] values;
+    private Queue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        values = Values.create();
+        queue = kind.createFull(capacity, values);
+    }
+
+    @State(Scope.Thread)
+    public static class ProducerIndex {
+        int i;
+    }
+
+    @Benchmark
+    @Group("producersConsumers")
+    @GroupThreads(1)
+    public void offer(ProducerIndex index) {
+        kind.offerEvicting(queue, values[index.i++ & Values.MASK]);
+    }
+
+    @Benchmark
+    @Group("producersConsumers")
+    @GroupThreads(1)
+    public Integer poll() {
+        return queue.poll();
+    }
+}
@@ -0,0 +1,137 @@
+package com.bvan.mriqueue.benchmarks;
+
+import com.bvan.mriqueue.ConcurrentMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.LockFreeMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.MostRecentlyInsertedBlockingQueue;
+import com.bvan.mriqueue.MostRecentlyInsertedQueue;
+import com.bvan.mriqueue.MpscMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.SpscMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.StripedMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.StripedMostRecentlyInsertedQueue.Recency;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Queue implementations under benchmark.
+ * <p>
+ * Baseline JDK queues don't evict, so {@link #offerEvicting(Queue, Object)}
+ * emulates keeping of the last {@code capacity} elements by polling the head.
+ *
+ * @author bvanchuhov
+ */
+public enum QueueKind {
+
+    MRI {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new MostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    CONCURRENT_MRI {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new ConcurrentMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    BLOCKING_MRI {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new MostRecentlyInsertedBlockingQueue<>(capacity);
+        }
+    },
+    LOCK_FREE_MRI {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new LockFreeMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    SPSC_MRI {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new SpscMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    MPSC_MRI {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new MpscMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    STRIPED_MRI_ORDERED {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new StripedMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    STRIPED_MRI_APPROXIMATE {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new StripedMostRecentlyInsertedQueue<>(capacity, stripes(capacity), Recency.APPROXIMATE);
+        }
+    },
+    ARRAY_BLOCKING {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public <E> void offerEvicting(Queue<E> queue, E e) {
+            while (!queue.offer(e)) {
+                queue.poll();
+            }
+        }
+    },
+    LINKED_BLOCKING {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new LinkedBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public <E> void offerEvicting(Queue<E> queue, E e) {
+            while (!queue.offer(e)) {
+                queue.poll();
+            }
+        }
+    },
+    /**
+     * Unbounded, so every offer is paired with a poll to keep the size constant.
+     */
+    CONCURRENT_LINKED {
+        @Override
+        public <E> Queue<E> create(int capacity) {
+            return new ConcurrentLinkedQueue<>();
+        }
+
+        @Override
+        public <E> void offerEvicting(Queue<E> queue, E e) {
+            queue.offer(e);
+            queue.poll();
+        }
+    };
+
+    public abstract <E> Queue<E> create(int capacity);
+
+    /**
+     * Offers {@code e}, evicting the head if the queue is full.
+     */
+    public <E> void offerEvicting(Queue<E> queue, E e) {
+        queue.offer(e);
+    }
+
+    private static int stripes(int capacity) {
+        return Math.min(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    public <E> Queue<E> createFull(int capacity, E[] values) {
+        Queue<E> queue = create(capacity);
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(values[i % values.length]);
+        }
+        return queue;
+    }
+}
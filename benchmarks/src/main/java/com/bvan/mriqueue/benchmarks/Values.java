@@ -0,0 +1,22 @@
+package com.bvan.mriqueue.benchmarks;
+
+/**
+ * Preallocated elements, so that benchmarks don't measure boxing.
+ *
+ * @author bvanchuhov
+ */
+final class Values {
+
+    static final int SIZE = 1 << 10;
+    static final int MASK = SIZE - 1;
+
+    private Values() {}
+
+    static Integer[] create() {
+        Integer[] values = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = Integer.valueOf(i + 1_000_000);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,186 @@
+package com.bvan.mriqueue.soak;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with the layout of HdrHistogram: values below {@code 2^11} are counted exactly,
+ * and every following power of two is split into {@code 2^10} equal buckets, so a value is counted
+ * with a relative error below 0.1% (three significant digits) over the whole {@code long} range in 54K counters.
+ * <p>
+ * {@link #record(long)} must be called by one thread, while other threads may {@link #add(LatencyHistogram)} it
+ * to another histogram to take a consistent enough snapshot of it for interval reports. Counters are written
+ * with release semantics, so a snapshot sees every value recorded before any value it sees.
+ * Statistics should be read from snapshots, which aren't recorded concurrently, and histograms are reused
+ * between reports by {@link #reset()}, so reports don't allocate.
+ *
+ * @author bvanchuhov
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 10;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int SUB_BUCKET_MASK = (SUB_BUCKET_HALF_COUNT << 1) - 1;
+    private static final int LEADING_ZERO_COUNT_BASE = 64 - SUB_BUCKET_HALF_COUNT_MAGNITUDE - 1;
+    private static final int COUNTS_LENGTH = (LEADING_ZERO_COUNT_BASE + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+
+    private final AtomicLongArray counts = new AtomicLongArray(COUNTS_LENGTH);
+
+    /** Written by the recording thread only. */
+    private volatile long totalCount;
+    private volatile long maxValue;
+
+    /**
+     * Counts {@code value}. Must not be called concurrently.
+     *
+     * @throws IllegalArgumentException if value is negative
+     */
+    void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value should be greater than or equal to 0: " + value);
+        }
+        if (value > maxValue) {
+            maxValue = value;
+        }
+        int index = countsIndex(value);
+        counts.setRelease(index, counts.getPlain(index) + 1);
+        totalCount = totalCount + 1;
+    }
+
+    /**
+     * Clears this histogram, which must not be recorded concurrently.
+     */
+    void reset() {
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            counts.setPlain(i, 0);
+        }
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    /**
+     * Adds counts of {@code other} to this histogram, which must not be recorded concurrently.
+     */
+    void add(LatencyHistogram other) {
+        long added = 0;
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            long count = other.counts.getAcquire(i);
+            if (count != 0) {
+                counts.setRelease(i, counts.getPlain(i) + count);
+                added += count;
+            }
+        }
+        totalCount = totalCount + added;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    /**
+     * Sets {@code interval} to values, which have been counted in this histogram, but not in the earlier
+     * snapshot {@code before} of it. Its max is the highest value equivalent to the highest non-empty bucket.
+     */
+    void since(LatencyHistogram before, LatencyHistogram interval) {
+        long total = 0;
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            long count = counts.getAcquire(i) - before.counts.getPlain(i);
+            interval.counts.setPlain(i, count);
+            total += count;
+        }
+        interval.totalCount = total;
+        interval.maxValue = interval.highestRecordedValue();
+    }
+
+    long totalCount() {
+        return totalCount;
+    }
+
+    long maxValue() {
+        return maxValue;
+    }
+
+    double mean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            long count = counts.getAcquire(i);
+            if (count != 0) {
+                total += count;
+                sum += (double) count * medianEquivalentValue(i);
+            }
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Sets {@code values[j]} to the highest value equivalent to the bucket, which holds the value at
+     * {@code percentiles[j]}, capped by the max value, or to 0 if the histogram is empty.
+     * All percentiles are found in one pass over counts, so the histogram must not be recorded concurrently.
+     *
+     * @throws IllegalArgumentException if percentiles aren't ascending in [0, 100],
+     *                                  or {@code values} is shorter than {@code percentiles}
+     */
+    void valuesAtPercentiles(double[] percentiles, long[] values) {
+        if (values.length < percentiles.length) {
+            throw new IllegalArgumentException("values should not be shorter than percentiles: " + values.length);
+        }
+        for (int j = 0; j < percentiles.length; j++) {
+            double percentile = percentiles[j];
+            if (!(percentile >= 0 && percentile <= 100) || (j > 0 && percentile < percentiles[j - 1])) {
+                throw new IllegalArgumentException("percentiles should be ascending in [0, 100]: " + percentile);
+            }
+        }
+
+        long total = totalCount;
+        int j = 0;
+        long seen = 0;
+        for (int i = 0; i < COUNTS_LENGTH && j < percentiles.length && total > 0; i++) {
+            seen += counts.getPlain(i);
+            while (j < percentiles.length && seen >= rank(percentiles[j], total)) {
+                values[j++] = Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        for (; j < percentiles.length; j++) {
+            values[j] = (total > 0) ? maxValue : 0;
+        }
+    }
+
+    private static long rank(double percentile, long total) {
+        return Math.max(1, (long) (percentile / 100 * total + 0.5));
+    }
+
+    private long highestRecordedValue() {
+        for (int i = COUNTS_LENGTH - 1; i >= 0; i--) {
+            if (counts.getAcquire(i) != 0) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return 0;
+    }
+
+    static int countsIndex(long value) {
+        int bucketIndex = LEADING_ZERO_COUNT_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long lowestEquivalentValue(int index) {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        int subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0) {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    static long highestEquivalentValue(int index) {
+        return lowestEquivalentValue(index) + bucketWidth(index) - 1;
+    }
+
+    private static long medianEquivalentValue(int index) {
+        return lowestEquivalentValue(index) + (bucketWidth(index) >> 1);
+    }
+
+    private static long bucketWidth(int index) {
+        int bucketIndex = Math.max(0, (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1);
+        return 1L << bucketIndex;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bvan.mriqueue.soak;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of a soak run, which are parsed from {@code --name value} pairs.
+ * Durations are numbers with one of the units {@code ms}, {@code s}, {@code m} or {@code h}.
+ *
+ * @author bvanchuhov
+ */
+final class SoakOptions {
+
+    static final String USAGE = "java -jar soak.jar"
+            + " [--queue BLOCKING_MRI|CONCURRENT_MRI] [--producers N] [--consumers N]"
+            + " [--rate elemsPerSecond] [--capacity N] [--duration 5m] [--warmup 30s] [--report-interval 10s]"
+            + " [--output file]";
+
+    SoakQueueKind queue = SoakQueueKind.BLOCKING_MRI;
+    int producers = 1;
+    int consumers = 1;
+    long rate = 100_000;
+    int capacity = 1024;
+    long durationNanos = TimeUnit.MINUTES.toNanos(5);
+    long warmupNanos = TimeUnit.SECONDS.toNanos(30);
+    long reportIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+    String output;
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown, has no value or its value isn't valid
+     */
+    static SoakOptions parse(String... args) {
+        SoakOptions options = new SoakOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("option has no value: " + name);
+            }
+            String value = args[i + 1];
+            switch (name) {
+                case "--queue":
+                    options.queue = SoakQueueKind.valueOf(value);
+                    break;
+                case "--producers":
+                    options.producers = positiveInt(name, value);
+                    break;
+                case "--consumers":
+                    options.consumers = positiveInt(name, value);
+                    break;
+                case "--rate":
+                    options.rate = positiveLong(name, value);
+                    break;
+                case "--capacity":
+                    options.capacity = positiveInt(name, value);
+                    break;
+                case "--duration":
+                    options.durationNanos = positiveDuration(name, value);
+                    break;
+                case "--warmup":
+                    options.warmupNanos = parseDuration(value);
+                    break;
+                case "--report-interval":
+                    options.reportIntervalNanos = positiveDuration(name, value);
+                    break;
+                case "--output":
+                    options.output = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + name);
+            }
+        }
+        return options;
+    }
+
+    static long parseDuration(String value) {
+        TimeUnit unit;
+        String amount;
+        if (value.endsWith("ms")) {
+            unit = TimeUnit.MILLISECONDS;
+            amount = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("s")) {
+            unit = TimeUnit.SECONDS;
+            amount = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit = TimeUnit.MINUTES;
+            amount = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("h")) {
+            unit = TimeUnit.HOURS;
+            amount = value.substring(0, value.length() - 1);
+        } else {
+            throw new IllegalArgumentException("duration should end with ms, s, m or h: " + value);
+        }
+        long nanos = unit.toNanos(Long.parseLong(amount));
+        if (nanos < 0) {
+            throw new IllegalArgumentException("duration should be greater than or equal to 0: " + value);
+        }
+        return nanos;
+    }
+
+    private static long positiveDuration(String name, String value) {
+        long nanos = parseDuration(value);
+        if (nanos == 0) {
+            throw new IllegalArgumentException(name + " should be greater than 0: " + value);
+        }
+        return nanos;
+    }
+
+    private static int positiveInt(String name, String value) {
+        int n = Integer.parseInt(value);
+        if (n <= 0) {
+            throw new IllegalArgumentException(name + " should be greater than 0: " + value);
+        }
+        return n;
+    }
+
+    private static long positiveLong(String name, String value) {
+        long n = Long.parseLong(value);
+        if (n <= 0) {
+            throw new IllegalArgumentException(name + " should be greater than 0: " + value);
+        }
+        return n;
+    }
+}
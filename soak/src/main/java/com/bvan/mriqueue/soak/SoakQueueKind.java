@@ -0,0 +1,30 @@
+package com.bvan.mriqueue.soak;
+
+import com.bvan.mriqueue.ConcurrentMostRecentlyInsertedQueue;
+import com.bvan.mriqueue.MostRecentlyInsertedBlockingQueue;
+import com.bvan.mriqueue.QueueMetrics;
+
+import java.util.Queue;
+
+/**
+ * Queues, which are soaked. Consumers of {@link #BLOCKING_MRI} wait in {@code poll(timeout)},
+ * while consumers of {@link #CONCURRENT_MRI} poll it and yield while it's empty.
+ *
+ * @author bvanchuhov
+ */
+enum SoakQueueKind {
+    BLOCKING_MRI {
+        @Override
+        Queue<Long> create(int capacity, QueueMetrics metrics) {
+            return new MostRecentlyInsertedBlockingQueue<>(capacity, null, metrics);
+        }
+    },
+    CONCURRENT_MRI {
+        @Override
+        Queue<Long> create(int capacity, QueueMetrics metrics) {
+            return new ConcurrentMostRecentlyInsertedQueue<>(capacity, null, metrics);
+        }
+    };
+
+    abstract Queue<Long> create(int capacity, QueueMetrics metrics);
+}
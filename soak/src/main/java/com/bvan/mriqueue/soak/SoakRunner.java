@@ -0,0 +1,314 @@
+package com.bvan.mriqueue.soak;
+
+import com.bvan.mriqueue.QueueMetrics;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offers elements to one queue from producer threads at a fixed total rate and polls them by consumer threads,
+ * recording the latency of every polled element from its enqueue to its dequeue in a {@link LatencyHistogram}.
+ * <p>
+ * Each producer sends on its own schedule of intended times, which are spread evenly between producers,
+ * and offers the intended time itself as the element. So when a producer is stalled, by the queue or by anything
+ * else, the elements it sends late to catch up carry the time they should have been sent at, and their latency
+ * includes the stall instead of omitting it (coordinated omission). How late producers have been after the warmup
+ * is reported as {@code maxSendLagNanos}: when it's close to the latencies, the load generator couldn't keep the rate.
+ * <p>
+ * Every report interval prints one JSON line of {@code "type":"interval"}, and the run ends with one line of
+ * {@code "type":"summary"} over the measured duration, which excludes the warmup. Latencies are in nanoseconds
+ * and are rounded up to the precision of the histogram. Evicted elements are never polled, so they're counted
+ * by {@code evictions} of {@link QueueMetrics} instead of latencies.
+ *
+ * @author bvanchuhov
+ */
+public final class SoakRunner {
+
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long POLL_TIMEOUT_MILLIS = 10;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final String[] PERCENTILE_NAMES = {"p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos", "p9999Nanos"};
+
+    private SoakRunner() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SoakOptions options;
+        try {
+            options = SoakOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: " + SoakOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (options.output == null) {
+            run(options, System.out);
+            System.out.flush();
+        } else {
+            try (PrintStream out = new PrintStream(new FileOutputStream(options.output), true, "UTF-8")) {
+                run(options, out);
+            }
+        }
+    }
+
+    static void run(SoakOptions options, PrintStream out) throws InterruptedException {
+        QueueMetrics metrics = new QueueMetrics();
+        Queue<Long> queue = options.queue.create(options.capacity, metrics);
+
+        long start = System.nanoTime() + START_DELAY_NANOS;
+        long measureStart = start + options.warmupNanos;
+        long end = measureStart + options.durationNanos;
+        double periodNanos = 1e9 * options.producers / options.rate;
+
+        Producer[] producers = new Producer[options.producers];
+        for (int i = 0; i < producers.length; i++) {
+            long phase = (long) (i * periodNanos / producers.length);
+            producers[i] = new Producer(queue, start + phase, periodNanos, measureStart, end);
+            producers[i].setName("soak-producer-" + i);
+        }
+        Consumer[] consumers = new Consumer[options.consumers];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Consumer(queue);
+            consumers[i].setName("soak-consumer-" + i);
+        }
+        for (Consumer consumer : consumers) {
+            consumer.start();
+        }
+        for (Producer producer : producers) {
+            producer.start();
+        }
+
+        // histograms are reused between reports, since every one has 54K counters
+        LatencyHistogram current = new LatencyHistogram();
+        LatencyHistogram previous = new LatencyHistogram();
+        LatencyHistogram interval = new LatencyHistogram();
+        LatencyHistogram baseline = new LatencyHistogram();
+        long[] percentileValues = new long[PERCENTILES.length];
+
+        QueueMetrics.Snapshot previousMetrics = metrics.snapshot();
+        QueueMetrics.Snapshot baselineMetrics = null;
+        long nextReport = start + options.reportIntervalNanos;
+        while (true) {
+            long reportTime = Math.min(nextReport, end);
+            if (baselineMetrics == null) {
+                reportTime = Math.min(reportTime, measureStart);
+            }
+            sleepUntil(reportTime);
+
+            sum(consumers, current);
+            QueueMetrics.Snapshot currentMetrics = metrics.snapshot();
+            if (baselineMetrics == null && reportTime == measureStart) {
+                baseline.add(current);
+                baselineMetrics = currentMetrics;
+            }
+            if (reportTime == nextReport || reportTime == end) {
+                JsonLine line = new JsonLine()
+                        .field("type", "interval")
+                        .field("phase", reportTime <= measureStart ? "warmup" : "measure")
+                        .field("elapsedSeconds", (reportTime - start) / 1e9);
+                current.since(previous, interval);
+                latencies(line, interval, percentileValues);
+                counters(line, currentMetrics, previousMetrics);
+                out.println(line);
+                LatencyHistogram swap = previous;
+                previous = current;
+                current = swap;
+                previousMetrics = currentMetrics;
+                nextReport += options.reportIntervalNanos;
+            }
+            if (reportTime == end) {
+                break;
+            }
+        }
+
+        long maxSendLagNanos = 0;
+        for (Producer producer : producers) {
+            producer.join();
+            maxSendLagNanos = Math.max(maxSendLagNanos, producer.maxSendLagNanos);
+        }
+        for (Consumer consumer : consumers) {
+            consumer.producing = false;
+        }
+        for (Consumer consumer : consumers) {
+            consumer.join();
+        }
+
+        QueueMetrics.Snapshot finalMetrics = metrics.snapshot();
+        JsonLine summary = new JsonLine()
+                .field("type", "summary")
+                .field("queue", options.queue.name())
+                .field("producers", options.producers)
+                .field("consumers", options.consumers)
+                .field("capacity", options.capacity)
+                .field("rate", options.rate)
+                .field("warmupSeconds", options.warmupNanos / 1e9)
+                .field("durationSeconds", options.durationNanos / 1e9)
+                .field("achievedRate", (finalMetrics.offerCount() - baselineMetrics.offerCount()) * 1e9 / options.durationNanos);
+        sum(consumers, current);
+        current.since(baseline, interval);
+        latencies(summary, interval, percentileValues);
+        counters(summary, finalMetrics, baselineMetrics);
+        summary.field("peakSize", finalMetrics.peakSize())
+                .field("maxSendLagNanos", maxSendLagNanos);
+        out.println(summary);
+    }
+
+    /**
+     * Sets {@code sum} to the sum of histograms of {@code consumers}.
+     */
+    private static void sum(Consumer[] consumers, LatencyHistogram sum) {
+        sum.reset();
+        for (Consumer consumer : consumers) {
+            sum.add(consumer.histogram);
+        }
+    }
+
+    private static void latencies(JsonLine line, LatencyHistogram histogram, long[] percentileValues) {
+        line.field("count", histogram.totalCount())
+                .field("meanNanos", Math.round(histogram.mean()));
+        histogram.valuesAtPercentiles(PERCENTILES, percentileValues);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            line.field(PERCENTILE_NAMES[i], percentileValues[i]);
+        }
+        line.field("maxNanos", histogram.maxValue());
+    }
+
+    private static void counters(JsonLine line, QueueMetrics.Snapshot current, QueueMetrics.Snapshot previous) {
+        line.field("offers", current.offerCount() - previous.offerCount())
+                .field("polls", current.pollCount() - previous.pollCount())
+                .field("evictions", current.evictionCount() - previous.evictionCount());
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+
+    private static final class Producer extends Thread {
+        private final Queue<Long> queue;
+        private final long start;
+        private final double periodNanos;
+        private final long measureStart;
+        private final long end;
+
+        /** Written by this producer only, after the warmup. */
+        volatile long maxSendLagNanos;
+
+        Producer(Queue<Long> queue, long start, double periodNanos, long measureStart, long end) {
+            this.queue = queue;
+            this.start = start;
+            this.periodNanos = periodNanos;
+            this.measureStart = measureStart;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            for (long k = 0; ; k++) {
+                long intended = start + (long) (k * periodNanos);
+                if (intended >= end) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    long wait = intended - now;
+                    if (wait > SPIN_NANOS) {
+                        LockSupport.parkNanos(wait - SPIN_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+                if (intended >= measureStart && now - intended > maxSendLagNanos) {
+                    maxSendLagNanos = now - intended;
+                }
+                queue.offer(intended);
+            }
+        }
+    }
+
+    private static final class Consumer extends Thread {
+        private final Queue<Long> queue;
+        private final BlockingQueue<Long> blockingQueue;
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        /** Cleared after all producers have stopped, so the consumer stops when the queue is empty. */
+        volatile boolean producing = true;
+
+        Consumer(Queue<Long> queue) {
+            this.queue = queue;
+            this.blockingQueue = queue instanceof BlockingQueue ? (BlockingQueue<Long>) queue : null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    boolean stopping = !producing;
+                    Long intended = poll();
+                    if (intended != null) {
+                        histogram.record(Math.max(0, System.nanoTime() - intended));
+                    } else if (stopping) {
+                        return;
+                    } else if (blockingQueue == null) {
+                        Thread.yield();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Long poll() throws InterruptedException {
+            return blockingQueue != null
+                    ? blockingQueue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    : queue.poll();
+        }
+    }
+
+    /**
+     * One JSON object of numbers and strings, which don't need to be escaped.
+     */
+    private static final class JsonLine {
+        private final StringBuilder sb = new StringBuilder("{");
+
+        JsonLine field(String name, String value) {
+            name(name).append('"').append(value).append('"');
+            return this;
+        }
+
+        JsonLine field(String name, long value) {
+            name(name).append(value);
+            return this;
+        }
+
+        JsonLine field(String name, double value) {
+            name(name).append(String.format(Locale.ROOT, "%.3f", value));
+            return this;
+        }
+
+        private StringBuilder name(String name) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            return sb.append('"').append(name).append("\":");
+        }
+
+        @Override
+        public String toString() {
+            return sb + "}";
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.bvan.mriqueue.soak;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.totalCount(), is(100L));
+        assertThat(valueAtPercentile(histogram, 50), is(50L));
+        assertThat(valueAtPercentile(histogram, 99), is(99L));
+        assertThat(valueAtPercentile(histogram, 100), is(100L));
+        assertThat(histogram.maxValue(), is(100L));
+        assertThat(histogram.mean(), is(closeTo(50.5, 1e-9)));
+    }
+
+    @Test
+    public void largeValuesHaveThreeSignificantDigits() {
+        long[] values = {2_048, 123_456, 98_765_432, 3_600_000_000_000L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.countsIndex(value);
+            assertThat(LatencyHistogram.lowestEquivalentValue(index), is(lessThanOrEqualTo(value)));
+            assertThat(LatencyHistogram.highestEquivalentValue(index), is(greaterThanOrEqualTo(value)));
+            assertThat((double) LatencyHistogram.highestEquivalentValue(index) - LatencyHistogram.lowestEquivalentValue(index),
+                    is(lessThan(value * 0.001)));
+        }
+    }
+
+    @Test
+    public void percentileIsCappedByMax() {
+        histogram.record(1_000_001);
+
+        assertThat(valueAtPercentile(histogram, 50), is(1_000_001L));
+    }
+
+    @Test
+    public void tailPercentilesSeeOutliers() {
+        for (int i = 0; i < 999; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(50_000_000);
+
+        assertThat(valueAtPercentile(histogram, 99.9), is(1_000L));
+        assertThat(valueAtPercentile(histogram, 99.99), is(50_000_000L));
+    }
+
+    @Test
+    public void sinceCountsOnlyNewValues() {
+        histogram.record(10);
+        histogram.record(20);
+        LatencyHistogram before = new LatencyHistogram();
+        before.add(histogram);
+        histogram.record(30);
+        histogram.record(40);
+
+        LatencyHistogram interval = new LatencyHistogram();
+        histogram.since(before, interval);
+
+        assertThat(interval.totalCount(), is(2L));
+        assertThat(valueAtPercentile(interval, 0), is(30L));
+        assertThat(interval.maxValue(), is(40L));
+        assertThat(before.totalCount(), is(2L));
+    }
+
+    @Test
+    public void emptyHistogramReturnsZeros() {
+        assertThat(valueAtPercentile(histogram, 99), is(0L));
+        assertThat(histogram.mean(), is(0.0));
+
+        LatencyHistogram interval = new LatencyHistogram();
+        histogram.since(new LatencyHistogram(), interval);
+        assertThat(interval.totalCount(), is(0L));
+    }
+
+    @Test
+    public void allPercentilesAreFoundInOnePass() {
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        long[] values = new long[4];
+
+        histogram.valuesAtPercentiles(new double[]{0, 50, 50, 100}, values);
+
+        assertThat(values, is(new long[]{1, 50, 50, 100}));
+    }
+
+    @Test
+    public void resetClearsIntervalForReuse() {
+        histogram.record(10);
+        LatencyHistogram interval = new LatencyHistogram();
+        histogram.since(new LatencyHistogram(), interval);
+
+        interval.reset();
+
+        assertThat(interval.totalCount(), is(0L));
+        assertThat(interval.maxValue(), is(0L));
+        assertThat(valueAtPercentile(interval, 100), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeValueIsRejected() {
+        histogram.record(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRangeIsRejected() {
+        valueAtPercentile(histogram, 100.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void descendingPercentilesAreRejected() {
+        histogram.valuesAtPercentiles(new double[]{99, 50}, new long[2]);
+    }
+
+    private static long valueAtPercentile(LatencyHistogram histogram, double percentile) {
+        long[] values = new long[1];
+        histogram.valuesAtPercentiles(new double[]{percentile}, values);
+        return values[0];
+    }
+}
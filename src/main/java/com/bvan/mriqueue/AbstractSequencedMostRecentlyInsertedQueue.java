@@ -0,0 +1,240 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free single-consumer base of {@code MostRecentlyInsertedQueue}, which differs by producers.
+ * <p>
+ * Elements are kept in a ring of preallocated slots, each of which is stamped with a sequence.
+ * A full queue isn't evicted by producers: they overwrite the oldest slots in place,
+ * and the consumer, which has been lapped, skips forward to {@code tail - capacity}.
+ * <p>
+ * Slot stamp is {@code 2 * seq + 2} when an element with sequence {@code seq} is published in it,
+ * and {@code 2 * seq + 1} while it's being written, so that the consumer can detect
+ * that a slot has been overwritten during reading, like with a seqlock.
+ * A slot, which the consumer has passed, is rewritten without the writing stamp, so any reader also checks
+ * after reading that {@code tail} hasn't reached the next sequence of the slot, which producers publish
+ * before they write it.
+ * <p>
+ * {@link #poll()}, {@link #peek()} and {@link #clear()} should be called by the consumer thread only.
+ * Removing of elements from the middle of the queue is not supported.
+ *
+ * @author bvanchuhov
+ */
+abstract class AbstractSequencedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    final int capacity;
+
+    final int mask;
+    final AtomicReferenceArray<E> items;
+    final AtomicLongArray stamps;
+
+    /**
+     * Sequence of the next element to be consumed. Written by the consumer only.
+     */
+    final PaddedSequence head = new PaddedSequence();
+
+    /**
+     * Sequence of the next element to be produced.
+     */
+    final PaddedSequence tail = new PaddedSequence();
+
+    /**
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    AbstractSequencedMostRecentlyInsertedQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity should not be greater than 2^30: " + capacity);
+        }
+        this.capacity = capacity;
+
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = Math.max(length, 1) - 1;
+        this.items = new AtomicReferenceArray<>(mask + 1);
+        this.stamps = new AtomicLongArray(mask + 1);
+    }
+
+    @Override
+    public int size() {
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(capacity, t - h));
+    }
+
+    @Override
+    public E poll() {
+        return consume(true);
+    }
+
+    @Override
+    public E peek() {
+        return consume(false);
+    }
+
+    @Override
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    /**
+     * Copies up to {@code k} most recent elements to the beginning of {@code dst} in the queue order
+     * without locks, which is O(k) time. It may be called by any thread.
+     * Slots, which are overwritten or not published yet during copying, are skipped,
+     * so fewer than {@code min(k, size)} elements may be copied, but every copied element is the one of its sequence.
+     *
+     * @return the number of copied elements.
+     * @throws IllegalArgumentException if {@code k} is negative or greater than {@code dst.length}
+     */
+    public int lastK(int k, E[] dst) {
+        if (k < 0 || k > dst.length) {
+            throw new IllegalArgumentException("k should be in [0, dst.length]: " + k);
+        }
+        long t = tail.get();
+        long from = Math.max(t - k, Math.max(head.get(), t - capacity));
+        int n = 0;
+        for (long seq = from; seq < t; seq++) {
+            E e = read(seq);
+            if (e != null) {
+                dst[n++] = e;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator, which may be used by any thread.
+     * It skips slots overwritten during iteration, but may return an element overwriting the slot being read twice.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator();
+    }
+
+
+    /**
+     * Writes {@code e} into the slot of {@code seq}. Tail should be already greater than {@code seq}.
+     *
+     * @param overwritesUnconsumed whether the previous element of the slot may be still read by the consumer,
+     *                             then the slot is marked by the writing stamp first.
+     */
+    void write(long seq, E e, boolean overwritesUnconsumed) {
+        int index = index(seq);
+        if (overwritesUnconsumed) {
+            stamps.set(index, writingStamp(seq));
+        }
+        items.lazySet(index, e);
+        stamps.lazySet(index, publishedStamp(seq));
+    }
+
+    /**
+     * @return sequence of the previous element in the slot of {@code seq}.
+     */
+    long previousInSlot(long seq) {
+        return seq - (mask + 1);
+    }
+
+    /**
+     * Called by the consumer only.
+     */
+    private E consume(boolean advance) {
+        long h = head.get();
+        while (true) {
+            long t = tail.get();
+            if (t - h > capacity) {
+                h = t - capacity;
+            }
+            if (h >= t) {
+                if (advance) {
+                    head.lazySet(h);
+                }
+                return null;
+            }
+
+            E e = read(h);
+            if (e != null) {
+                if (advance) {
+                    head.lazySet(h + 1);
+                }
+                return e;
+            }
+            // either lapped by producers, so tail is re-read, or the element isn't published yet
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return element with sequence {@code seq}, or {@code null} if the slot has another one.
+     */
+    E read(long seq) {
+        int index = index(seq);
+        long stamp = stamps.get(index);
+        if (stamp != publishedStamp(seq)) {
+            return null;
+        }
+        E e = items.get(index);
+        if (stamps.get(index) != stamp) {
+            return null;
+        }
+        // the next element of the slot may be written without the writing stamp, but only after its tail
+        return (tail.get() - seq <= mask + 1) ? e : null;
+    }
+
+    int index(long seq) {
+        return (int) seq & mask;
+    }
+
+    static long writingStamp(long seq) {
+        return 2 * seq + 1;
+    }
+
+    static long publishedStamp(long seq) {
+        return 2 * seq + 2;
+    }
+
+    private class QueueIterator implements Iterator<E> {
+        private long cursor;
+        private E next;
+
+        QueueIterator() {
+            cursor = head.get();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            E res = next;
+            advance();
+            return res;
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                long t = tail.get();
+                cursor = Math.max(cursor, t - capacity);
+                if (cursor >= t) {
+                    return;
+                }
+                next = read(cursor);
+                if (next != null || stamps.get(index(cursor)) > publishedStamp(cursor)) {
+                    cursor++;
+                }
+            }
+        }
+    }
+}
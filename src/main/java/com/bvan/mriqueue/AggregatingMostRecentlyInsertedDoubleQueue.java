@@ -0,0 +1,130 @@
+package com.bvan.mriqueue;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * Not thread-safe implementation of {@code MostRecentlyInsertedDoubleQueue},
+ * which maintains sum, mean, min and max of its values.
+ * <p>
+ * Aggregates are updated on every insertion and eviction in O(1) amortized time,
+ * so reading them doesn't iterate over the queue. Removing a value from the middle by an iterator
+ * rebuilds them in O(n) time, like shifting of the following values does.
+ *
+ * @author bvanchuhov
+ */
+public class AggregatingMostRecentlyInsertedDoubleQueue extends MostRecentlyInsertedDoubleQueue {
+
+    private final int capacity;
+    private final DoubleWindowAggregates aggregates;
+
+    /**
+     * Creates a queue, which returns {@code 0.0} from {@link #pollDouble()}, {@link #peekDouble()}
+     * and aggregates when it is empty.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public AggregatingMostRecentlyInsertedDoubleQueue(int capacity) {
+        this(capacity, 0.0);
+    }
+
+    /**
+     * @param missingValue returned from {@link #pollDouble()}, {@link #peekDouble()}, {@link #mean()},
+     *                     {@link #min()} and {@link #max()} when the queue is empty.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public AggregatingMostRecentlyInsertedDoubleQueue(int capacity, double missingValue) {
+        super(capacity, missingValue);
+        this.capacity = capacity;
+        this.aggregates = new DoubleWindowAggregates(capacity);
+    }
+
+    @Override
+    public boolean offerDouble(double e) {
+        if (size() == capacity) {
+            aggregates.evictFirst(peekDouble());
+        }
+        aggregates.add(e);
+        return super.offerDouble(e);
+    }
+
+    @Override
+    public double pollDouble() {
+        if (isEmpty()) {
+            return missingValue();
+        }
+        double res = super.pollDouble();
+        aggregates.evictFirst(res);
+        return res;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        aggregates.clear();
+    }
+
+    /**
+     * @return sum of the values, or {@code 0.0} if the queue is empty.
+     */
+    public double sum() {
+        return aggregates.sum();
+    }
+
+    /**
+     * @return arithmetic mean of the values, or {@link #missingValue()} if the queue is empty.
+     */
+    public double mean() {
+        return (!isEmpty()) ? aggregates.sum() / size() : missingValue();
+    }
+
+    /**
+     * @return min of the values, or {@link #missingValue()} if the queue is empty.
+     */
+    public double min() {
+        return (!isEmpty()) ? aggregates.min() : missingValue();
+    }
+
+    /**
+     * @return max of the values, or {@link #missingValue()} if the queue is empty.
+     */
+    public double max() {
+        return (!isEmpty()) ? aggregates.max() : missingValue();
+    }
+
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new AggregatingIterator(super.iterator());
+    }
+
+
+    private void rebuildAggregates() {
+        aggregates.clear();
+        for (PrimitiveIterator.OfDouble it = super.iterator(); it.hasNext(); ) {
+            aggregates.add(it.nextDouble());
+        }
+    }
+
+    private class AggregatingIterator implements PrimitiveIterator.OfDouble {
+        private final PrimitiveIterator.OfDouble it;
+
+        AggregatingIterator(PrimitiveIterator.OfDouble it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public double nextDouble() {
+            return it.nextDouble();
+        }
+
+        @Override
+        public void remove() {
+            it.remove();
+            rebuildAggregates();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.bvan.mriqueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link EvictionListener}, which hands evicted elements over to a background thread,
+ * so the offering thread doesn't spend time on releasing them.
+ * The background thread takes elements in batches and passes each of them to the {@code releaser}.
+ * <p>
+ * Elements are handed over through a preallocated buffer, so nothing is allocated per element.
+ * If the buffer is full or the releaser is closed, the element is released by the offering thread.
+ *
+ * @author bvanchuhov
+ */
+public class BackgroundEvictionReleaser<E> implements EvictionListener<E>, AutoCloseable {
+
+    private final EvictionListener<? super E> releaser;
+    private final BlockingQueue<E> handoff;
+    private final int maxBatchSize;
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * @param bufferCapacity max number of evicted elements, which wait for the background thread.
+     * @param maxBatchSize   max number of elements, which the background thread takes at once.
+     * @throws IllegalArgumentException if {@code bufferCapacity} or {@code maxBatchSize} is not positive
+     */
+    public BackgroundEvictionReleaser(int bufferCapacity, int maxBatchSize, EvictionListener<? super E> releaser) {
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("bufferCapacity should be greater than 0: " + bufferCapacity);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize should be greater than 0: " + maxBatchSize);
+        }
+        this.releaser = Objects.requireNonNull(releaser);
+        this.handoff = new ArrayBlockingQueue<>(bufferCapacity);
+        this.maxBatchSize = maxBatchSize;
+
+        this.thread = new Thread(this::releaseLoop, "mri-queue-eviction-releaser");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * If the releaser is closed after the element is handed over, the handoff buffer is released
+     * by the offering thread, so the element isn't left there after {@link #close()} has drained it.
+     */
+    @Override
+    public void onEviction(E element) {
+        if (closed || !handoff.offer(element)) {
+            releaser.onEviction(element);
+        } else if (closed) {
+            releaseRemaining();
+        }
+    }
+
+    /**
+     * Stops the background thread and releases the remaining elements by the calling thread.
+     * Elements evicted afterwards are released by the evicting threads.
+     * <p>
+     * If the calling thread is interrupted while waiting for the background thread, its interrupt status is set,
+     * and the remaining elements are released without waiting.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        releaseRemaining();
+    }
+
+    private void releaseRemaining() {
+        E element;
+        while ((element = handoff.poll()) != null) {
+            releaser.onEviction(element);
+        }
+    }
+
+    private void releaseLoop() {
+        List<E> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                batch.add(handoff.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            handoff.drainTo(batch, maxBatchSize - 1);
+
+            for (E element : batch) {
+                try {
+                    releaser.onEviction(element);
+                } catch (RuntimeException e) {
+                    Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                    handler.uncaughtException(thread, e);
+                }
+            }
+            batch.clear();
+        }
+    }
+}
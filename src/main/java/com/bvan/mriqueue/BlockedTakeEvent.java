@@ -0,0 +1,27 @@
+package com.bvan.mriqueue;
+
+import jdk.jfr.*;
+
+/**
+ * Wait of a consumer on an empty queue.
+ *
+ * @author bvanchuhov
+ */
+@Name("com.bvan.mriqueue.BlockedTake")
+@Label("Queue Blocked Take")
+@Category("MRI Queue")
+@Description("Consumer was blocked on an empty queue in take or poll with a timeout")
+@Threshold("10 ms")
+@StackTrace(false)
+class BlockedTakeEvent extends Event {
+
+    @Label("Queue Class")
+    Class<?> queueClass;
+
+    @Label("Queue Id")
+    @Description("Identity hash code of the queue")
+    int queueId;
+
+    @Label("Operation")
+    String operation;
+}
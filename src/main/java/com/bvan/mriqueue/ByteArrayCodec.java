@@ -0,0 +1,30 @@
+package com.bvan.mriqueue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author bvanchuhov
+ */
+final class ByteArrayCodec implements Codec<byte[]> {
+
+    static final ByteArrayCodec INSTANCE = new ByteArrayCodec();
+
+    private ByteArrayCodec() {}
+
+    @Override
+    public int encodedLength(byte[] e) {
+        return e.length;
+    }
+
+    @Override
+    public void encode(byte[] e, ByteBuffer dst) {
+        dst.put(e);
+    }
+
+    @Override
+    public byte[] decode(ByteBuffer src) {
+        byte[] res = new byte[src.remaining()];
+        src.get(res);
+        return res;
+    }
+}
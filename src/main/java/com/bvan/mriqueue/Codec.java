@@ -0,0 +1,34 @@
+package com.bvan.mriqueue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts elements to bytes and back for queues, which keep serialized elements.
+ *
+ * @author bvanchuhov
+ */
+public interface Codec<E> {
+
+    /**
+     * @return number of bytes, which {@link #encode(Object, ByteBuffer)} writes for {@code e}.
+     */
+    int encodedLength(E e);
+
+    /**
+     * Writes exactly {@link #encodedLength(Object)} bytes of {@code e} starting from the position of {@code dst}.
+     */
+    void encode(E e, ByteBuffer dst);
+
+    /**
+     * Reads an element from the bytes between the position and the limit of {@code src}.
+     * {@code src} is valid only during the call.
+     */
+    E decode(ByteBuffer src);
+
+    /**
+     * @return codec, which keeps {@code byte[]} elements as is.
+     */
+    static Codec<byte[]> byteArray() {
+        return ByteArrayCodec.INSTANCE;
+    }
+}
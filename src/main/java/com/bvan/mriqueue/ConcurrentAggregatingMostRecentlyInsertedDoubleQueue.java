@@ -0,0 +1,391 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe implementation of {@code AggregatingMostRecentlyInsertedDoubleQueue}.
+ * <p>
+ * Unlike {@code ConcurrentMostRecentlyInsertedDoubleQueue}, producers and consumers share one lock,
+ * because both of them update the aggregates. The lock is held for O(1) amortized time by offering, polling
+ * and reading aggregates, so reading them is consistent and doesn't iterate over the queue.
+ *
+ * @author bvanchuhov
+ */
+public class ConcurrentAggregatingMostRecentlyInsertedDoubleQueue extends AbstractQueue<Double> implements Queue<Double> {
+
+    private final int capacity;
+    private final double missingValue;
+
+    private final double[] items;
+
+    /**
+     * Sequence of the head value. Guarded by {@code lock}.
+     */
+    private long head;
+
+    /**
+     * Sequence of the slot next to the tail value. Guarded by {@code lock}.
+     */
+    private long tail;
+
+    /**
+     * Number of values. Changed under {@code lock}.
+     */
+    private volatile int count;
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private final DoubleWindowAggregates aggregates;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Creates a queue, which returns {@code 0.0} from {@link #pollDouble()}, {@link #peekDouble()}
+     * and aggregates when it is empty.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConcurrentAggregatingMostRecentlyInsertedDoubleQueue(int capacity) {
+        this(capacity, 0.0);
+    }
+
+    /**
+     * @param missingValue returned from {@link #pollDouble()}, {@link #peekDouble()}, {@link #mean()},
+     *                     {@link #min()} and {@link #max()} when the queue is empty.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConcurrentAggregatingMostRecentlyInsertedDoubleQueue(int capacity, double missingValue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.missingValue = missingValue;
+        this.items = new double[capacity];
+        this.aggregates = new DoubleWindowAggregates(capacity);
+    }
+
+    public double missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public boolean offerDouble(double e) {
+        lock.lock();
+        try {
+            if (count == capacity) {
+                dequeue();
+            }
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public double pollDouble() {
+        if (count == 0) {
+            return missingValue;
+        }
+
+        lock.lock();
+        try {
+            return (count > 0) ? dequeue() : missingValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public double peekDouble() {
+        if (count == 0) {
+            return missingValue;
+        }
+
+        lock.lock();
+        try {
+            return (count > 0) ? items[index(head)] : missingValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return sum of the values, or {@code 0.0} if the queue is empty.
+     */
+    public double sum() {
+        lock.lock();
+        try {
+            return aggregates.sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return arithmetic mean of the values, or {@link #missingValue()} if the queue is empty.
+     */
+    public double mean() {
+        lock.lock();
+        try {
+            return (count > 0) ? aggregates.sum() / count : missingValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return min of the values, or {@link #missingValue()} if the queue is empty.
+     */
+    public double min() {
+        lock.lock();
+        try {
+            return (count > 0) ? aggregates.min() : missingValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return max of the values, or {@link #missingValue()} if the queue is empty.
+     */
+    public double max() {
+        lock.lock();
+        try {
+            return (count > 0) ? aggregates.max() : missingValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Double e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return offerDouble(e);
+    }
+
+    @Override
+    public Double poll() {
+        if (count == 0) {
+            return null;
+        }
+
+        lock.lock();
+        try {
+            return (count > 0) ? dequeue() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Double peek() {
+        if (count == 0) {
+            return null;
+        }
+
+        lock.lock();
+        try {
+            return (count > 0) ? items[index(head)] : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (!(obj instanceof Double)) {
+            return false;
+        }
+
+        double value = (Double) obj;
+        lock.lock();
+        try {
+            for (long seq = head; seq < tail; seq++) {
+                if (Double.compare(items[index(seq)], value) == 0) {
+                    removeAt(seq);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        if (!(obj instanceof Double) || count == 0) {
+            return false;
+        }
+
+        double value = (Double) obj;
+        lock.lock();
+        try {
+            for (long seq = head; seq < tail; seq++) {
+                if (Double.compare(items[index(seq)], value) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            head = tail;
+            count = 0;
+            aggregates.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator.
+     */
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new QueueIterator();
+    }
+
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private void enqueue(double e) {
+        items[index(tail)] = e;
+        tail++;
+        aggregates.add(e);
+
+        count++;
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private double dequeue() {
+        double res = items[index(head)];
+        head++;
+        aggregates.evictFirst(res);
+
+        count--;
+
+        return res;
+    }
+
+    /**
+     * Removes the value with sequence {@code seq} by shifting the following values one slot towards the head,
+     * and rebuilds the aggregates in O(n) time. Guarded by {@code lock}.
+     */
+    private void removeAt(long seq) {
+        for (long s = seq + 1; s < tail; s++) {
+            items[index(s - 1)] = items[index(s)];
+        }
+        tail--;
+
+        aggregates.clear();
+        for (long s = head; s < tail; s++) {
+            aggregates.add(items[index(s)]);
+        }
+
+        count--;
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+
+    private class QueueIterator implements PrimitiveIterator.OfDouble {
+
+        private long lastRet = -1;
+        private double lastRetValue;
+
+        private long cursor;
+        private boolean hasNext;
+        private double nextValue;
+
+        public QueueIterator() {
+            lock.lock();
+            try {
+                cursor = head;
+                advance();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public double nextDouble() {
+            lock.lock();
+            try {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                lastRet = cursor;
+                lastRetValue = nextValue;
+                cursor++;
+                advance();
+                return lastRetValue;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Guarded by {@code lock}.
+         */
+        private void advance() {
+            cursor = Math.max(cursor, head);
+            hasNext = cursor < tail;
+            if (hasNext) {
+                nextValue = items[index(cursor)];
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+
+            lock.lock();
+            try {
+                long seq = lastRet;
+                lastRet = -1;
+                if (seq >= head && seq < tail && Double.compare(items[index(seq)], lastRetValue) == 0) {
+                    removeAt(seq);
+                    cursor--;
+                    advance();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
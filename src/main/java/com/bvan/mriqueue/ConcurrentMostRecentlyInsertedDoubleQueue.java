@@ -0,0 +1,351 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe implementation of {@code MostRecentlyInsertedDoubleQueue}.
+ * <p>
+ * Values are kept unboxed in a preallocated {@code double[]} ring, addressed by sequences of the head and the tail,
+ * so nothing is allocated after construction by {@code offerDouble}, {@code pollDouble} and {@code peekDouble}.
+ *
+ * @author bvanchuhov
+ */
+public class ConcurrentMostRecentlyInsertedDoubleQueue extends AbstractQueue<Double> implements Queue<Double> {
+
+    private final int capacity;
+    private final double missingValue;
+
+    private final double[] items;
+
+    /**
+     * Sequence of the head value. Guarded by {@code takeLock}.
+     */
+    private long head;
+
+    /**
+     * Sequence of the slot next to the tail value. Guarded by {@code putLock}.
+     */
+    private long tail;
+
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    /**
+     * Creates a queue, which returns {@code 0.0} from {@link #pollDouble()} and {@link #peekDouble()} when it is empty.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConcurrentMostRecentlyInsertedDoubleQueue(int capacity) {
+        this(capacity, 0.0);
+    }
+
+    /**
+     * @param missingValue returned from {@link #pollDouble()} and {@link #peekDouble()} when the queue is empty.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConcurrentMostRecentlyInsertedDoubleQueue(int capacity, double missingValue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.missingValue = missingValue;
+        this.items = new double[capacity];
+    }
+
+    public double missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    public boolean offerDouble(double e) {
+        putLock.lock();
+        try {
+            if (size() == capacity) {
+                lockedEnqueue(e);
+            } else {
+                enqueue(e);
+            }
+        } finally {
+            putLock.unlock();
+        }
+
+        return true;
+    }
+
+    private void lockedEnqueue(double e) {
+        takeLock.lock();
+        try {
+            if (size() == capacity) {
+                items[index(tail)] = e;
+                tail++;
+                head++;
+            } else {
+                enqueue(e);
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public double pollDouble() {
+        if (isEmpty()) {
+            return missingValue;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? dequeue() : missingValue;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public double peekDouble() {
+        if (isEmpty()) {
+            return missingValue;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? items[index(head)] : missingValue;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Double e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return offerDouble(e);
+    }
+
+    @Override
+    public Double poll() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? dequeue() : null;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public Double peek() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? items[index(head)] : null;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (!(obj instanceof Double)) {
+            return false;
+        }
+
+        double value = (Double) obj;
+        fullyLock();
+        try {
+            for (long seq = head; seq < tail; seq++) {
+                if (Double.compare(items[index(seq)], value) == 0) {
+                    removeAt(seq);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        if (!(obj instanceof Double) || isEmpty()) {
+            return false;
+        }
+
+        double value = (Double) obj;
+        fullyLock();
+        try {
+            for (long seq = head; seq < tail; seq++) {
+                if (Double.compare(items[index(seq)], value) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fullyLock();
+        try {
+            head = tail;
+            count.set(0);
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * Returns <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator.
+     */
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new QueueIterator();
+    }
+
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private void enqueue(double e) {
+        items[index(tail)] = e;
+        tail++;
+
+        count.incrementAndGet();
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private double dequeue() {
+        double res = items[index(head)];
+        head++;
+
+        count.decrementAndGet();
+
+        return res;
+    }
+
+    /**
+     * Removes the value with sequence {@code seq} by shifting the following values one slot towards the head.
+     * Guarded by {@code putLock} and {@code takeLock}.
+     */
+    private void removeAt(long seq) {
+        for (long s = seq + 1; s < tail; s++) {
+            items[index(s - 1)] = items[index(s)];
+        }
+        tail--;
+
+        count.decrementAndGet();
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    private void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+
+
+    private class QueueIterator implements PrimitiveIterator.OfDouble {
+
+        private long lastRet = -1;
+        private double lastRetValue;
+
+        private long cursor;
+        private boolean hasNext;
+        private double nextValue;
+
+        public QueueIterator() {
+            fullyLock();
+            try {
+                cursor = head;
+                advance();
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public double nextDouble() {
+            fullyLock();
+            try {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                lastRet = cursor;
+                lastRetValue = nextValue;
+                cursor++;
+                advance();
+                return lastRetValue;
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        /**
+         * Guarded by {@code putLock} and {@code takeLock}.
+         */
+        private void advance() {
+            cursor = Math.max(cursor, head);
+            hasNext = cursor < tail;
+            if (hasNext) {
+                nextValue = items[index(cursor)];
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+
+            fullyLock();
+            try {
+                long seq = lastRet;
+                lastRet = -1;
+                if (seq >= head && seq < tail && Double.compare(items[index(seq)], lastRetValue) == 0) {
+                    removeAt(seq);
+                    cursor--;
+                    advance();
+                }
+            } finally {
+                fullyUnlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe implementation of {@code MostRecentlyInsertedLongQueue}.
+ * <p>
+ * Values are kept unboxed in a preallocated {@code long[]} ring, addressed by sequences of the head and the tail,
+ * so nothing is allocated after construction by {@code offerLong}, {@code pollLong} and {@code peekLong}.
+ *
+ * @author bvanchuhov
+ */
+public class ConcurrentMostRecentlyInsertedLongQueue extends AbstractQueue<Long> implements Queue<Long> {
+
+    private final int capacity;
+    private final long missingValue;
+
+    private final long[] items;
+
+    /**
+     * Sequence of the head value. Guarded by {@code takeLock}.
+     */
+    private long head;
+
+    /**
+     * Sequence of the slot next to the tail value. Guarded by {@code putLock}.
+     */
+    private long tail;
+
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    /**
+     * Creates a queue, which returns {@code 0L} from {@link #pollLong()} and {@link #peekLong()} when it is empty.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConcurrentMostRecentlyInsertedLongQueue(int capacity) {
+        this(capacity, 0L);
+    }
+
+    /**
+     * @param missingValue returned from {@link #pollLong()} and {@link #peekLong()} when the queue is empty.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConcurrentMostRecentlyInsertedLongQueue(int capacity, long missingValue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.missingValue = missingValue;
+        this.items = new long[capacity];
+    }
+
+    public long missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    public boolean offerLong(long e) {
+        putLock.lock();
+        try {
+            if (size() == capacity) {
+                lockedEnqueue(e);
+            } else {
+                enqueue(e);
+            }
+        } finally {
+            putLock.unlock();
+        }
+
+        return true;
+    }
+
+    private void lockedEnqueue(long e) {
+        takeLock.lock();
+        try {
+            if (size() == capacity) {
+                items[index(tail)] = e;
+                tail++;
+                head++;
+            } else {
+                enqueue(e);
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public long pollLong() {
+        if (isEmpty()) {
+            return missingValue;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? dequeue() : missingValue;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public long peekLong() {
+        if (isEmpty()) {
+            return missingValue;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? items[index(head)] : missingValue;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Long e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return offerLong(e);
+    }
+
+    @Override
+    public Long poll() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? dequeue() : null;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public Long peek() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? items[index(head)] : null;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (!(obj instanceof Long)) {
+            return false;
+        }
+
+        long value = (Long) obj;
+        fullyLock();
+        try {
+            for (long seq = head; seq < tail; seq++) {
+                if (items[index(seq)] == value) {
+                    removeAt(seq);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        if (!(obj instanceof Long) || isEmpty()) {
+            return false;
+        }
+
+        long value = (Long) obj;
+        fullyLock();
+        try {
+            for (long seq = head; seq < tail; seq++) {
+                if (items[index(seq)] == value) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fullyLock();
+        try {
+            head = tail;
+            count.set(0);
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * Returns <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator.
+     */
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new QueueIterator();
+    }
+
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private void enqueue(long e) {
+        items[index(tail)] = e;
+        tail++;
+
+        count.incrementAndGet();
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private long dequeue() {
+        long res = items[index(head)];
+        head++;
+
+        count.decrementAndGet();
+
+        return res;
+    }
+
+    /**
+     * Removes the value with sequence {@code seq} by shifting the following values one slot towards the head.
+     * Guarded by {@code putLock} and {@code takeLock}.
+     */
+    private void removeAt(long seq) {
+        for (long s = seq + 1; s < tail; s++) {
+            items[index(s - 1)] = items[index(s)];
+        }
+        tail--;
+
+        count.decrementAndGet();
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    private void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+
+
+    private class QueueIterator implements PrimitiveIterator.OfLong {
+
+        private long lastRet = -1;
+        private long lastRetValue;
+
+        private long cursor;
+        private boolean hasNext;
+        private long nextValue;
+
+        public QueueIterator() {
+            fullyLock();
+            try {
+                cursor = head;
+                advance();
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public long nextLong() {
+            fullyLock();
+            try {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                lastRet = cursor;
+                lastRetValue = nextValue;
+                cursor++;
+                advance();
+                return lastRetValue;
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        /**
+         * Guarded by {@code putLock} and {@code takeLock}.
+         */
+        private void advance() {
+            cursor = Math.max(cursor, head);
+            hasNext = cursor < tail;
+            if (hasNext) {
+                nextValue = items[index(cursor)];
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+
+            fullyLock();
+            try {
+                long seq = lastRet;
+                lastRet = -1;
+                if (seq >= head && seq < tail && items[index(seq)] == lastRetValue) {
+                    removeAt(seq);
+                    cursor--;
+                    advance();
+                }
+            } finally {
+                fullyUnlock();
+            }
+        }
+    }
+}
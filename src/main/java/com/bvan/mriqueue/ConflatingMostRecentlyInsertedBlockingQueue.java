@@ -0,0 +1,470 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe blocking implementation of {@code MostRecentlyInsertedQueue}, which conflates elements by key.
+ * <p>
+ * Offering an element with the key of a queued element replaces it in place, so the element keeps
+ * the position of the queued one, and consumers receive only the latest element of every key.
+ * So a burst of one key doesn't evict other keys, and consumers' work is bounded by the number of distinct keys.
+ * <p>
+ * Queued nodes are indexed by key in a {@link ConcurrentHashMap}. Replacing is a lookup and a CAS of the item
+ * of the node without the lock, and it doesn't signal consumers, since the queue doesn't become non-empty.
+ * A consumer marks the item of a node as taken after it has unlinked the node,
+ * so a replacement either is taken with the node or fails and inserts a new node at the tail.
+ * Inserting and removing nodes is guarded by {@code lock}.
+ *
+ * @param <K> type of keys, which should be suitable for a {@link ConcurrentHashMap}.
+ * @author bvanchuhov
+ */
+public class ConflatingMostRecentlyInsertedBlockingQueue<K, E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final int capacity;
+    private final Function<? super E, ? extends K> keyExtractor;
+    private final EvictionListener<? super E> evictionListener;
+
+    private final ConcurrentHashMap<K, Node<K, E>> index = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmptyCondition = lock.newCondition();
+
+    /**
+     * Sentinel, which is linked to the first and the last nodes. Guarded by {@code lock}.
+     */
+    private final Node<K, E> sentinel = new Node<>(null, null);
+
+    /**
+     * Number of linked nodes. Changed under {@code lock}.
+     */
+    private volatile int count;
+
+    /**
+     * @param keyExtractor returns keys of elements, which are not {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConflatingMostRecentlyInsertedBlockingQueue(int capacity, Function<? super E, ? extends K> keyExtractor) {
+        this(capacity, keyExtractor, null);
+    }
+
+    /**
+     * @param keyExtractor     returns keys of elements, which are not {@code null}.
+     * @param evictionListener receives elements evicted from the head, when the queue is full, may be {@code null}.
+     *                         Replaced elements aren't passed to it.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public ConflatingMostRecentlyInsertedBlockingQueue(int capacity, Function<? super E, ? extends K> keyExtractor,
+                                                       EvictionListener<? super E> evictionListener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (keyExtractor == null) {
+            throw new NullPointerException();
+        }
+        this.capacity = capacity;
+        this.keyExtractor = keyExtractor;
+        this.evictionListener = evictionListener;
+        sentinel.prev = sentinel.next = sentinel;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Replaces the queued element with the same key, or inserts {@code e} at the tail.
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        K key = keyOf(e);
+
+        Node<K, E> queued = index.get(key);
+        if (queued != null && queued.replace(e)) {
+            return true;
+        }
+
+        E evicted = null;
+        lock.lock();
+        try {
+            queued = index.get(key);
+            if (queued != null && queued.replace(e)) {
+                return true;
+            }
+
+            Node<K, E> node = new Node<>(key, e);
+            index.put(key, node);
+            linkLast(node);
+            if (count > capacity) {
+                evicted = takeFirst();
+            }
+            notEmptyCondition.signal();
+        } finally {
+            lock.unlock();
+        }
+        onEviction(evicted);
+
+        return true;
+    }
+
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmptyCondition.await();
+            }
+            E res = takeFirst();
+            signalNextConsumer();
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmptyCondition.awaitNanos(nanos);
+            }
+            E res = takeFirst();
+            signalNextConsumer();
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        if (count == 0) {
+            return null;
+        }
+
+        lock.lock();
+        try {
+            return (count > 0) ? takeFirst() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        if (count == 0) {
+            return null;
+        }
+
+        lock.lock();
+        try {
+            return (count > 0) ? sentinel.next.item() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with the same key as {@code obj}, if it's equal to {@code obj}.
+     * The checked element is taken atomically, so an element, which replaces it concurrently, stays queued.
+     *
+     * @throws ClassCastException if {@code obj} can't be passed to the key extractor
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        K key = keyOf((E) obj);
+
+        lock.lock();
+        try {
+            Node<K, E> node = index.get(key);
+            if (node == null) {
+                return false;
+            }
+            E item = node.item();
+            if (!obj.equals(item) || !node.take(item)) {
+                return false;
+            }
+            unlink(node);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up the element with the same key as {@code obj} without locks.
+     *
+     * @throws ClassCastException if {@code obj} can't be passed to the key extractor
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        Node<K, E> node = index.get(keyOf((E) obj));
+        return node != null && obj.equals(node.item());
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Node<K, E> node = sentinel.next; node != sentinel; node = node.next) {
+                node.take();
+            }
+            index.clear();
+            sentinel.prev = sentinel.next = sentinel;
+            count = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        lock.lock();
+        try {
+            Object[] res = new Object[count];
+            Node<K, E> node = sentinel.next;
+            for (int i = 0; i < res.length; i++, node = node.next) {
+                res[i] = node.item();
+            }
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator over a copy of the queue.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator(toArray());
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * If adding to {@code c} fails, the element being added is dropped, and the rest stay in the queue.
+     */
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && count > 0) {
+                c.add(takeFirst());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private K keyOf(E e) {
+        K key = keyExtractor.apply(e);
+        if (key == null) {
+            throw new NullPointerException("key of " + e);
+        }
+        return key;
+    }
+
+    private void onEviction(E evicted) {
+        if (evicted != null && evictionListener != null) {
+            evictionListener.onEviction(evicted);
+        }
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private void linkLast(Node<K, E> node) {
+        Node<K, E> last = sentinel.prev;
+        node.prev = last;
+        node.next = sentinel;
+        last.next = node;
+        sentinel.prev = node;
+        count++;
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private E takeFirst() {
+        return take(sentinel.next);
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     * The node is unlinked and removed from the index before its item is taken,
+     * so that producers, which replace the item later, insert a new node instead.
+     *
+     * @return the latest item of the node.
+     */
+    private E take(Node<K, E> node) {
+        unlink(node);
+        return node.take();
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private void unlink(Node<K, E> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        count--;
+        index.remove(node.key, node);
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private void signalNextConsumer() {
+        if (count > 0) {
+            notEmptyCondition.signal();
+        }
+    }
+
+
+    private static final class Node<K, E> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Object> ITEM =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "item");
+
+        private static final Object TAKEN = new Object();
+
+        final K key;
+        private volatile Object item;
+
+        Node<K, E> prev;
+        Node<K, E> next;
+
+        Node(K key, E item) {
+            this.key = key;
+            this.item = item;
+        }
+
+        @SuppressWarnings("unchecked")
+        E item() {
+            Object res = item;
+            return (res != TAKEN) ? (E) res : null;
+        }
+
+        /**
+         * @return {@code false} if the item has been taken already.
+         */
+        boolean replace(E e) {
+            while (true) {
+                Object current = item;
+                if (current == TAKEN) {
+                    return false;
+                }
+                if (ITEM.compareAndSet(this, current, e)) {
+                    return true;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        E take() {
+            return (E) ITEM.getAndSet(this, TAKEN);
+        }
+
+        /**
+         * @return {@code false} if the item isn't {@code expected} anymore, then it's left in the node.
+         */
+        boolean take(E expected) {
+            return ITEM.compareAndSet(this, expected, TAKEN);
+        }
+    }
+
+    private class QueueIterator implements Iterator<E> {
+        private final Object[] items;
+        private int cursor;
+        private int lastRet = -1;
+
+        QueueIterator(Object[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < items.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= items.length) {
+                throw new NoSuchElementException();
+            }
+            lastRet = cursor++;
+            return (E) items[lastRet];
+        }
+
+        /**
+         * Removes the last returned element, unless it has been removed or replaced already.
+         */
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            ConflatingMostRecentlyInsertedBlockingQueue.this.remove(items[lastRet]);
+            lastRet = -1;
+        }
+    }
+}
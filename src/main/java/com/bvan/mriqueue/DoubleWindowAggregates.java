@@ -0,0 +1,202 @@
+package com.bvan.mriqueue;
+
+/**
+ * Sum, min and max of a sliding window of {@code double} values, which are added at the tail and evicted from the head.
+ * <p>
+ * Finite values are summed with Neumaier's compensated summation, so adding and subtracting values
+ * doesn't accumulate the rounding error of a naive running sum. Infinities and NaNs are counted instead of summed,
+ * so the sum recovers after they are evicted.
+ * Min and max are the heads of monotonic deques, each value is pushed to and popped from them at most once,
+ * so every operation takes O(1) amortized time.
+ * <p>
+ * Not thread-safe, it's guarded by the owning queue.
+ *
+ * @author bvanchuhov
+ */
+final class DoubleWindowAggregates {
+
+    /**
+     * Sequence of the head value of the window.
+     */
+    private long head;
+
+    /**
+     * Sequence of the next value added to the window.
+     */
+    private long tail;
+
+    private double sum;
+    private double compensation;
+
+    private int nanCount;
+    private int positiveInfinityCount;
+    private int negativeInfinityCount;
+
+    /**
+     * Increasing values, which may become the min after older values are evicted.
+     */
+    private final MonotonicDeque minDeque;
+
+    /**
+     * Decreasing values, which may become the max after older values are evicted.
+     */
+    private final MonotonicDeque maxDeque;
+
+    DoubleWindowAggregates(int capacity) {
+        this.minDeque = new MonotonicDeque(capacity, 1);
+        this.maxDeque = new MonotonicDeque(capacity, -1);
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * The window shouldn't be full, so the head value should be evicted before adding to a full window.
+     */
+    void add(double e) {
+        accumulate(e, 1);
+        minDeque.push(tail, e);
+        maxDeque.push(tail, e);
+        tail++;
+    }
+
+    /**
+     * @param e head value of the window.
+     */
+    void evictFirst(double e) {
+        accumulate(e, -1);
+        minDeque.evict(head);
+        maxDeque.evict(head);
+        head++;
+
+        if (head == tail) {
+            sum = 0.0;
+            compensation = 0.0;
+        }
+    }
+
+    void clear() {
+        head = tail;
+        sum = 0.0;
+        compensation = 0.0;
+        nanCount = 0;
+        positiveInfinityCount = 0;
+        negativeInfinityCount = 0;
+        minDeque.clear();
+        maxDeque.clear();
+    }
+
+    /**
+     * @return sum of the window, which is {@code 0.0} if the window is empty.
+     */
+    double sum() {
+        if (nanCount > 0 || (positiveInfinityCount > 0 && negativeInfinityCount > 0)) {
+            return Double.NaN;
+        }
+        if (positiveInfinityCount > 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (negativeInfinityCount > 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return sum + compensation;
+    }
+
+    /**
+     * The window shouldn't be empty.
+     *
+     * @return min of the window, which is NaN if any value is NaN, like {@link Math#min(double, double)}.
+     */
+    double min() {
+        return (nanCount > 0) ? Double.NaN : minDeque.first();
+    }
+
+    /**
+     * The window shouldn't be empty.
+     *
+     * @return max of the window, which is NaN if any value is NaN, like {@link Math#max(double, double)}.
+     */
+    double max() {
+        return (nanCount > 0) ? Double.NaN : maxDeque.first();
+    }
+
+    private void accumulate(double e, int sign) {
+        if (Double.isNaN(e)) {
+            nanCount += sign;
+        } else if (e == Double.POSITIVE_INFINITY) {
+            positiveInfinityCount += sign;
+        } else if (e == Double.NEGATIVE_INFINITY) {
+            negativeInfinityCount += sign;
+        } else {
+            addToSum((sign > 0) ? e : -e);
+        }
+    }
+
+    private void addToSum(double e) {
+        double t = sum + e;
+        if (Math.abs(sum) >= Math.abs(e)) {
+            compensation += (sum - t) + e;
+        } else {
+            compensation += (e - t) + sum;
+        }
+        sum = t;
+    }
+
+
+    /**
+     * Ring of values with their sequences, which are ordered by {@link Double#compare(double, double)} multiplied by
+     * {@code order} from the first to the last.
+     */
+    private static final class MonotonicDeque {
+        private final int order;
+
+        private final double[] values;
+        private final long[] seqs;
+        private int first;
+        private int size;
+
+        MonotonicDeque(int capacity, int order) {
+            this.order = order;
+            this.values = new double[capacity];
+            this.seqs = new long[capacity];
+        }
+
+        /**
+         * Pops the last values, which can't become the first before {@code e} is evicted, and pushes {@code e}.
+         */
+        void push(long seq, double e) {
+            while (size > 0 && Double.compare(values[index(size - 1)], e) * order >= 0) {
+                size--;
+            }
+            int index = index(size);
+            values[index] = e;
+            seqs[index] = seq;
+            size++;
+        }
+
+        /**
+         * Pops the first value, if it has sequence {@code seq}.
+         */
+        void evict(long seq) {
+            if (size > 0 && seqs[first] == seq) {
+                first = (first + 1 == values.length) ? 0 : first + 1;
+                size--;
+            }
+        }
+
+        double first() {
+            return values[first];
+        }
+
+        void clear() {
+            first = 0;
+            size = 0;
+        }
+
+        private int index(int i) {
+            int index = first + i;
+            return (index >= values.length) ? index - values.length : index;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.bvan.mriqueue;
+
+/**
+ * Receives elements, which are evicted from the head of a full queue to make room for new ones.
+ * It's called by the offering thread after the queue locks are released.
+ *
+ * @author bvanchuhov
+ */
+@FunctionalInterface
+public interface EvictionListener<E> {
+
+    void onEviction(E element);
+}
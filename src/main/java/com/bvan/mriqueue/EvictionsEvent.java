@@ -0,0 +1,30 @@
+package com.bvan.mriqueue;
+
+import jdk.jfr.*;
+
+/**
+ * Number of elements evicted from a queue during a period.
+ *
+ * @author bvanchuhov
+ */
+@Name("com.bvan.mriqueue.Evictions")
+@Label("Queue Evictions")
+@Category("MRI Queue")
+@Description("Elements evicted from a queue for capacity, weight or age during a period")
+@StackTrace(false)
+class EvictionsEvent extends Event {
+
+    @Label("Queue Class")
+    Class<?> queueClass;
+
+    @Label("Queue Id")
+    @Description("Identity hash code of the queue")
+    int queueId;
+
+    @Label("Evicted Count")
+    long evictedCount;
+
+    @Label("Period")
+    @Timespan(Timespan.NANOSECONDS)
+    long period;
+}
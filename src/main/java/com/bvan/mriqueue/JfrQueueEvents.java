@@ -0,0 +1,106 @@
+package com.bvan.mriqueue;
+
+import jdk.jfr.EventType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDK Flight Recorder events of one queue, which carry its class and identity hash code.
+ * It's loaded only by {@link QueueEvents#of(Object)}, when the {@code jdk.jfr} module is present.
+ * <p>
+ * When the events aren't enabled in a running recording, {@link #evicted(int)} returns after the check of a flag,
+ * which JFR keeps in the event type, without allocating an event, and waits are only wrapped by events,
+ * which aren't committed.
+ * <p>
+ * Evictions are summed in a {@link LongAdder} and committed as one {@link EvictionsEvent} per period
+ * by a thread, which evicts after the period has ended. So the last period of a queue, which has stopped evicting,
+ * isn't committed until it evicts again.
+ *
+ * @author bvanchuhov
+ */
+final class JfrQueueEvents extends QueueEvents {
+
+    private static final long EVICTIONS_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final EventType EVICTIONS_EVENT_TYPE = EventType.getEventType(EvictionsEvent.class);
+
+    private final Class<?> queueClass;
+    private final int queueId;
+    private final long evictionsPeriodNanos;
+
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong periodStart = new AtomicLong(System.nanoTime());
+
+    JfrQueueEvents(Object queue, long evictionsPeriodNanos) {
+        this.queueClass = queue.getClass();
+        this.queueId = System.identityHashCode(queue);
+        this.evictionsPeriodNanos = evictionsPeriodNanos;
+    }
+
+    static QueueEvents of(Object queue) {
+        return new JfrQueueEvents(queue, EVICTIONS_PERIOD_NANOS);
+    }
+
+    @Override
+    Object beginLockWait() {
+        LockWaitEvent event = new LockWaitEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void commitLockWait(Object lockWait, String lock) {
+        LockWaitEvent event = (LockWaitEvent) lockWait;
+        event.end();
+        if (event.shouldCommit()) {
+            event.queueClass = queueClass;
+            event.queueId = queueId;
+            event.lock = lock;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginBlockedTake() {
+        BlockedTakeEvent event = new BlockedTakeEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void commitBlockedTake(Object blockedTake, String operation) {
+        BlockedTakeEvent event = (BlockedTakeEvent) blockedTake;
+        event.end();
+        if (event.shouldCommit()) {
+            event.queueClass = queueClass;
+            event.queueId = queueId;
+            event.operation = operation;
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds {@code n} evictions to the current period and commits the period, if it has ended.
+     * An event is allocated only for a committed period.
+     */
+    @Override
+    void evicted(int n) {
+        if (!EVICTIONS_EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        evictions.add(n);
+
+        long start = periodStart.get();
+        long now = System.nanoTime();
+        if (now - start >= evictionsPeriodNanos && periodStart.compareAndSet(start, now)) {
+            EvictionsEvent event = new EvictionsEvent();
+            event.queueClass = queueClass;
+            event.queueId = queueId;
+            event.evictedCount = evictions.sumThenReset();
+            event.period = now - start;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe implementation of {@code MostRecentlyInsertedQueue}, which keeps one element per key.
+ * <p>
+ * Offering an element with the key of an element in the queue replaces it and moves it to the tail,
+ * so the queue keeps the {@code capacity} most recently inserted distinct keys, like an LRU ordering.
+ * Nodes are doubly linked and indexed by key in a hash map, so re-offering,
+ * {@link #remove(Object)} and {@link #contains(Object)} are O(1) time instead of a scan.
+ * All operations are guarded by one lock, which is held for O(1) time except for copying and clearing.
+ *
+ * @param <K> type of keys, which should be suitable for a {@link HashMap}.
+ * @param <E> type of elements.
+ * @author bvanchuhov
+ */
+public class KeyedMostRecentlyInsertedQueue<K, E> extends AbstractQueue<E> implements Queue<E> {
+
+    private final int capacity;
+    private final Function<? super E, ? extends K> keyExtractor;
+    private final EvictionListener<? super E> evictionListener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private final HashMap<K, Node<K, E>> index = new HashMap<>();
+
+    /**
+     * Sentinel, which is linked to the first and the last nodes. Guarded by {@code lock}.
+     */
+    private final Node<K, E> sentinel = new Node<>(null, null);
+
+    /**
+     * @param keyExtractor returns keys of elements, which are not {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public KeyedMostRecentlyInsertedQueue(int capacity, Function<? super E, ? extends K> keyExtractor) {
+        this(capacity, keyExtractor, null);
+    }
+
+    /**
+     * @param keyExtractor     returns keys of elements, which are not {@code null}.
+     * @param evictionListener receives elements evicted from the head, when the queue is full, may be {@code null}.
+     *                         Elements replaced by re-offering their keys aren't passed to it.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public KeyedMostRecentlyInsertedQueue(int capacity, Function<? super E, ? extends K> keyExtractor,
+                                          EvictionListener<? super E> evictionListener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (keyExtractor == null) {
+            throw new NullPointerException();
+        }
+        this.capacity = capacity;
+        this.keyExtractor = keyExtractor;
+        this.evictionListener = evictionListener;
+        sentinel.prev = sentinel.next = sentinel;
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts {@code e} at the tail. If there is an element with the same key, it's unlinked first.
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        K key = keyOf(e);
+        Node<K, E> node = new Node<>(key, e);
+
+        E evicted = null;
+        lock.lock();
+        try {
+            Node<K, E> replaced = index.put(key, node);
+            if (replaced != null) {
+                unlink(replaced);
+            } else if (index.size() > capacity) {
+                Node<K, E> first = sentinel.next;
+                index.remove(first.key);
+                unlink(first);
+                evicted = first.item;
+            }
+            linkLast(node);
+        } finally {
+            lock.unlock();
+        }
+        onEviction(evicted);
+
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            Node<K, E> first = sentinel.next;
+            if (first == sentinel) {
+                return null;
+            }
+            index.remove(first.key);
+            unlink(first);
+            return first.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return sentinel.next.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with the same key as {@code obj}, if it's equal to {@code obj}, in O(1) time.
+     *
+     * @throws ClassCastException if {@code obj} can't be passed to the key extractor
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        K key = keyOf((E) obj);
+
+        lock.lock();
+        try {
+            Node<K, E> node = index.get(key);
+            if (node == null || !node.item.equals(obj)) {
+                return false;
+            }
+            index.remove(key);
+            unlink(node);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with {@code key} in O(1) time.
+     *
+     * @return the removed element, or {@code null} if there is no element with {@code key}.
+     */
+    public E removeKey(K key) {
+        lock.lock();
+        try {
+            Node<K, E> node = index.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return node.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up the element with the same key as {@code obj} in O(1) time.
+     *
+     * @throws ClassCastException if {@code obj} can't be passed to the key extractor
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        K key = keyOf((E) obj);
+
+        lock.lock();
+        try {
+            Node<K, E> node = index.get(key);
+            return node != null && node.item.equals(obj);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean containsKey(K key) {
+        lock.lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            index.clear();
+            for (Node<K, E> node = sentinel.next; node != sentinel; ) {
+                Node<K, E> next = node.next;
+                node.prev = node.next = null;
+                node = next;
+            }
+            sentinel.prev = sentinel.next = sentinel;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        lock.lock();
+        try {
+            Object[] res = new Object[index.size()];
+            Node<K, E> node = sentinel.next;
+            for (int i = 0; i < res.length; i++, node = node.next) {
+                res[i] = node.item;
+            }
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator over a copy of the queue.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator(copyNodes());
+    }
+
+
+    private K keyOf(E e) {
+        K key = keyExtractor.apply(e);
+        if (key == null) {
+            throw new NullPointerException("key of " + e);
+        }
+        return key;
+    }
+
+    private void onEviction(E evicted) {
+        if (evicted != null && evictionListener != null) {
+            evictionListener.onEviction(evicted);
+        }
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private void linkLast(Node<K, E> node) {
+        Node<K, E> last = sentinel.prev;
+        node.prev = last;
+        node.next = sentinel;
+        last.next = node;
+        sentinel.prev = node;
+    }
+
+    /**
+     * Guarded by {@code lock}.
+     * Links of {@code node} stay as they are, so {@link Node#isLinked()} tells that it's removed by {@code prev}.
+     */
+    private void unlink(Node<K, E> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<K, E>[] copyNodes() {
+        lock.lock();
+        try {
+            Node<K, E>[] res = (Node<K, E>[]) new Node<?, ?>[index.size()];
+            Node<K, E> node = sentinel.next;
+            for (int i = 0; i < res.length; i++, node = node.next) {
+                res[i] = node;
+            }
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private static final class Node<K, E> {
+        final K key;
+        final E item;
+        Node<K, E> prev;
+        Node<K, E> next;
+
+        Node(K key, E item) {
+            this.key = key;
+            this.item = item;
+        }
+
+        boolean isLinked() {
+            return prev != null;
+        }
+    }
+
+    private class QueueIterator implements Iterator<E> {
+        private final Node<K, E>[] nodes;
+        private int cursor;
+        private int lastRet = -1;
+
+        QueueIterator(Node<K, E>[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < nodes.length;
+        }
+
+        @Override
+        public E next() {
+            if (cursor >= nodes.length) {
+                throw new NoSuchElementException();
+            }
+            lastRet = cursor++;
+            return nodes[lastRet].item;
+        }
+
+        /**
+         * Removes the last returned element, unless it has been removed or replaced already.
+         * The index is checked, so a node, which has been dropped by {@code clear}, doesn't unlink the node,
+         * which has been offered with its key after that.
+         */
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            Node<K, E> node = nodes[lastRet];
+            lastRet = -1;
+
+            lock.lock();
+            try {
+                if (node.isLinked() && index.remove(node.key, node)) {
+                    unlink(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free multi-producer/multi-consumer implementation of {@code MostRecentlyInsertedQueue}.
+ * <p>
+ * Elements are kept in a ring of preallocated slots, each of which is stamped with a sequence.
+ * Producers claim a sequence by incrementing {@code tail}, consumers claim one by CAS on {@code head}.
+ * When the queue is full, a producer claims the head itself and overwrites the oldest element in place.
+ * A consumer, which has been lapped by producers, detects it by a slot stamp and retries from the new head.
+ * <p>
+ * Slot stamp is {@code 2 * seq} when the slot may be written with sequence {@code seq},
+ * and {@code 2 * seq + 1} when an element with sequence {@code seq} is published in it.
+ * <p>
+ * Removing of an element from the middle of the queue is best-effort: the element is cleared in its slot,
+ * which stays published until the slot reaches the head and is skipped by consumers. So a removed element
+ * still counts to {@code size} and {@code capacity} until then. Consumers and {@code remove} claim an element
+ * by clearing its slot atomically, so an element is either polled, evicted or removed, but never two of them.
+ *
+ * @author bvanchuhov
+ */
+public class LockFreeMostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    private final int capacity;
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray stamps;
+
+    /**
+     * Sequence of the next element to be consumed.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Sequence of the next element to be produced.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public LockFreeMostRecentlyInsertedQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity should not be greater than 2^30: " + capacity);
+        }
+        this.capacity = capacity;
+
+        int length = ringLength(capacity);
+        this.mask = length - 1;
+        this.items = new AtomicReferenceArray<>(length);
+        this.stamps = new AtomicLongArray(length);
+        for (int i = 0; i < length; i++) {
+            stamps.set(i, writableStamp(i));
+        }
+    }
+
+    @Override
+    public int size() {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            if (h == head.get()) {
+                return (int) Math.max(0, Math.min(capacity, t - h));
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        long seq = tail.getAndIncrement();
+        int index = index(seq);
+        long writable = writableStamp(seq);
+
+        while (true) {
+            long h = head.get();
+            if (seq - h >= capacity) {
+                if (head.compareAndSet(h, h + 1)) {
+                    consume(h);
+                }
+            } else if (stamps.get(index) == writable) {
+                break;
+            } else {
+                // previous occupant of the slot is being consumed
+                Thread.yield();
+            }
+        }
+
+        items.lazySet(index, e);
+        stamps.set(index, publishedStamp(seq));
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        while (true) {
+            long h = head.get();
+            long stamp = stamps.get(index(h));
+            long published = publishedStamp(h);
+
+            if (stamp == published) {
+                if (head.compareAndSet(h, h + 1)) {
+                    E res = consume(h);
+                    if (res != null) {
+                        return res;
+                    }
+                }
+            } else if (stamp < published && h == head.get()) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        while (true) {
+            long h = head.get();
+            int index = index(h);
+            long stamp = stamps.get(index);
+            long published = publishedStamp(h);
+
+            if (stamp == published) {
+                E item = items.get(index);
+                if (item != null && stamps.get(index) == published) {
+                    return item;
+                }
+                if (item == null && head.compareAndSet(h, h + 1)) {
+                    // head was removed, but not claimed by a consumer, so it's skipped here
+                    consume(h);
+                }
+            } else if (stamp < published && h == head.get()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Clears the first slot from the head, which holds an element equal to {@code obj}.
+     * The slot is skipped, when it reaches the head.
+     */
+    @Override
+    public boolean remove(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+
+        for (long seq = head.get(); seq < tail.get(); seq++) {
+            seq = Math.max(seq, head.get());
+
+            int index = index(seq);
+            long published = publishedStamp(seq);
+            if (stamps.get(index) == published) {
+                E item = items.get(index);
+                if (item != null && obj.equals(item) && stamps.get(index) == published
+                        && items.compareAndSet(index, item, null)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator, which doesn't support removing.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator();
+    }
+
+
+    /**
+     * Takes the element from the slot with sequence {@code seq}, which was claimed by advancing {@code head}.
+     * Waits until a producer of the element publishes it.
+     *
+     * @return {@code null} if the element was removed.
+     */
+    private E consume(long seq) {
+        int index = index(seq);
+        long published = publishedStamp(seq);
+        while (stamps.get(index) != published) {
+            Thread.yield();
+        }
+
+        E res = items.getAndSet(index, null);
+        stamps.set(index, writableStamp(seq + mask + 1));
+        return res;
+    }
+
+    private int index(long seq) {
+        return (int) seq & mask;
+    }
+
+    private static long writableStamp(long seq) {
+        return seq << 1;
+    }
+
+    private static long publishedStamp(long seq) {
+        return (seq << 1) + 1;
+    }
+
+    private static int ringLength(int capacity) {
+        int length = Integer.highestOneBit(capacity);
+        return (length == capacity) ? length : length << 1;
+    }
+
+
+    private class QueueIterator implements Iterator<E> {
+
+        private long seq = head.get();
+        private E nextItem = advance();
+
+        @Override
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        @Override
+        public E next() {
+            if (nextItem == null) {
+                throw new NoSuchElementException();
+            }
+            E res = nextItem;
+            nextItem = advance();
+            return res;
+        }
+
+        private E advance() {
+            for (; seq < tail.get(); seq++) {
+                seq = Math.max(seq, head.get());
+
+                int index = index(seq);
+                long published = publishedStamp(seq);
+                if (stamps.get(index) == published) {
+                    E item = items.get(index);
+                    if (item != null && stamps.get(index) == published) {
+                        seq++;
+                        return item;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
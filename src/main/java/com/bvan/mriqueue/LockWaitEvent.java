@@ -0,0 +1,27 @@
+package com.bvan.mriqueue;
+
+import jdk.jfr.*;
+
+/**
+ * Wait of a thread for a contended lock of a queue.
+ *
+ * @author bvanchuhov
+ */
+@Name("com.bvan.mriqueue.LockWait")
+@Label("Queue Lock Wait")
+@Category("MRI Queue")
+@Description("Thread waited for a contended putLock or takeLock of a queue")
+@Threshold("10 ms")
+@StackTrace(false)
+class LockWaitEvent extends Event {
+
+    @Label("Queue Class")
+    Class<?> queueClass;
+
+    @Label("Queue Id")
+    @Description("Identity hash code of the queue")
+    int queueId;
+
+    @Label("Lock")
+    String lock;
+}
@@ -3,80 +3,290 @@ package com.bvan.mriqueue;
 import java.lang.reflect.Array;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Thread-safe blocking implementation of {@code MostRecentlyInsertedQueue}.
+ * <p>
+ * Producers never take {@code takeLock} unless a consumer is parked on an empty queue.
+ * Every removal from the head, either by a consumer or by an evicting producer,
+ * first reserves nodes by decrementing {@code count} while it is positive
+ * and then moves the {@code beforeFirst} sentinel over them by CAS.
+ * <p>
+ * With a max age, every node is stamped under {@code putLock}, so stamps don't decrease from the head to the tail.
+ * Expired elements are dropped from the head under {@code takeLock} by {@code offer}, consumers, {@code size}
+ * and iteration, which is O(expired) time. Producers take {@code takeLock} for that only when the head may have expired.
+ * <p>
+ * With a {@link Weigher}, the queue is bounded by the running total of weights of the linked nodes
+ * instead of the number of elements. Nodes are subtracted from the total, when they are detached,
+ * so a producer may evict more than necessary, while a consumer takes concurrently.
+ * <p>
+ * Waits for contended locks, consumers blocked on an empty queue and evictions are reported
+ * as JDK Flight Recorder events {@code com.bvan.mriqueue.*}, when they are enabled in a recording.
+ * On a runtime without the {@code jdk.jfr} module the events are disabled.
  *
  * @author bvanchuhov
  */
 public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
 
-    private final int capacity;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MostRecentlyInsertedBlockingQueue, Node> BEFORE_FIRST =
+            AtomicReferenceFieldUpdater.newUpdater(MostRecentlyInsertedBlockingQueue.class, Node.class, "beforeFirst");
 
     /**
-     * Guarded by {@code takeLock}.
+     * Written under {@code putLock}.
+     */
+    private volatile int capacity;
+    private final EvictionListener<? super E> evictionListener;
+
+    /**
+     * {@code 0} if elements don't expire.
+     */
+    private final long maxAgeMillis;
+    private final Ticker ticker;
+
+    /**
+     * {@code null} if the queue is bounded by {@code capacity} only.
+     */
+    private final Weigher<? super E> weigher;
+    private final long maxWeight;
+
+    /**
+     * {@code null} if metrics are disabled.
+     */
+    private final QueueMetrics metrics;
+
+    private final QueueEvents events = QueueEvents.of(this);
+
+    /**
+     * Total weight of the linked nodes, or {@code 0} without a weigher.
+     */
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * List of evicted elements, which is given back after they have been passed to the eviction listener,
+     * so that a full weighted queue doesn't allocate a list per offer.
+     * An eviction, which finds no list here, e.g. while another one is passed to the listener, allocates its own.
+     */
+    private final AtomicReference<List<E>> spareEvicted = new AtomicReference<>();
+
+    /**
+     * Time, before which no element expires. Written under {@code takeLock}.
      */
-    private Node<E> beforeFirst;
+    private volatile long expiryDeadline;
+
+    /**
+     * Moved by {@link #detachFirst(int)} and {@link #purgeExpired()} only.
+     */
+    private volatile Node<E> beforeFirst;
 
     /**
      * Guarded by {@code putLock}.
      */
     private Node<E> last;
 
+    /**
+     * Number of linked and not reserved nodes.
+     */
     private final AtomicInteger count = new AtomicInteger(0);
 
     private final ReentrantLock takeLock = new ReentrantLock();
     private final Condition notEmptyCondition = takeLock.newCondition();
 
+    /**
+     * Number of consumers, which are parked or are about to park on {@code notEmptyCondition},
+     * and of pending {@link #takeAsync()} futures.
+     * Changed under {@code takeLock}.
+     */
+    private volatile int waitingConsumers;
+
+    /**
+     * Pending {@link #takeAsync()} futures in the order of calls. Guarded by {@code takeLock}.
+     */
+    private final ArrayDeque<AsyncTake> asyncTakes = new ArrayDeque<>();
+
     private final ReentrantLock putLock = new ReentrantLock();
 
     /**
      * @throws IllegalArgumentException if {@code capacity} is not positive
      */
     public MostRecentlyInsertedBlockingQueue(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param evictionListener receives elements evicted from the head, when the queue is full, may be {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedBlockingQueue(int capacity, EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, 0, Ticker.SYSTEM);
+    }
+
+    /**
+     * @param evictionListener receives elements evicted from the head, when the queue is full, may be {@code null}.
+     * @param metrics          counts operations on the queue, lock waits and blocking of consumers,
+     *                         may be {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedBlockingQueue(int capacity, EvictionListener<? super E> evictionListener,
+                                             QueueMetrics metrics) {
+        this(capacity, evictionListener, 0, Ticker.SYSTEM, null, Long.MAX_VALUE, metrics);
+    }
+
+    /**
+     * @param maxAge time after insertion, when an element expires.
+     * @throws IllegalArgumentException if {@code capacity} or {@code maxAge} is not positive
+     */
+    public MostRecentlyInsertedBlockingQueue(int capacity, long maxAge, TimeUnit unit) {
+        this(capacity, maxAge, unit, null);
+    }
+
+    /**
+     * @param maxAge           time after insertion, when an element expires.
+     * @param evictionListener receives elements evicted from the head, when the queue is full,
+     *                         and expired elements, may be {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} or {@code maxAge} is not positive
+     */
+    public MostRecentlyInsertedBlockingQueue(int capacity, long maxAge, TimeUnit unit,
+                                             EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, maxAgeMillis(maxAge, unit), Ticker.SYSTEM);
+    }
+
+    /**
+     * Creates a queue, which is bounded by the total weight of elements instead of their number.
+     * An element heavier than {@code maxWeight} is evicted right after it's inserted.
+     *
+     * @param maxWeight total weight of elements, which isn't exceeded after an insertion.
+     * @throws IllegalArgumentException if {@code maxWeight} is not positive
+     */
+    public MostRecentlyInsertedBlockingQueue(Weigher<? super E> weigher, long maxWeight) {
+        this(weigher, maxWeight, null);
+    }
+
+    /**
+     * Creates a queue, which is bounded by the total weight of elements instead of their number.
+     * An element heavier than {@code maxWeight} is evicted right after it's inserted.
+     *
+     * @param maxWeight        total weight of elements, which isn't exceeded after an insertion.
+     * @param evictionListener receives elements evicted from the head to keep the total weight,
+     *                         may be {@code null}.
+     * @throws IllegalArgumentException if {@code maxWeight} is not positive
+     */
+    public MostRecentlyInsertedBlockingQueue(Weigher<? super E> weigher, long maxWeight,
+                                             EvictionListener<? super E> evictionListener) {
+        this(Integer.MAX_VALUE, evictionListener, 0, Ticker.SYSTEM, Objects.requireNonNull(weigher), maxWeight, null);
+    }
+
+    MostRecentlyInsertedBlockingQueue(int capacity, EvictionListener<? super E> evictionListener,
+                                      long maxAgeMillis, Ticker ticker) {
+        this(capacity, evictionListener, maxAgeMillis, ticker, null, Long.MAX_VALUE, null);
+    }
+
+    MostRecentlyInsertedBlockingQueue(int capacity, EvictionListener<? super E> evictionListener,
+                                      long maxAgeMillis, Ticker ticker,
+                                      Weigher<? super E> weigher, long maxWeight, QueueMetrics metrics) {
         if (capacity <= 0) {
             throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
         }
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight should be greater than 0: " + maxWeight);
+        }
         this.capacity = capacity;
+        this.evictionListener = evictionListener;
+        this.maxAgeMillis = maxAgeMillis;
+        this.ticker = ticker;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        this.metrics = metrics;
+        this.expiryDeadline = (maxAgeMillis > 0) ? ticker.millis() + maxAgeMillis : 0;
         beforeFirst = last = Node.emptyNode();
     }
 
     @Override
     public int size() {
+        purgeIfDue();
         return count.get();
     }
 
-    @Override
-    public void put(E e) throws InterruptedException {
-        if (e == null) {
-            throw new NullPointerException();
+    /**
+     * @return total weight of elements, or {@code 0} if the queue has no weigher.
+     */
+    public long weight() {
+        purgeIfDue();
+        return weight.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Changes the bound of the number of elements, which isn't backed by storage,
+     * so the nodes aren't copied or relinked, and consumers aren't blocked.
+     * If the queue has more elements than {@code capacity}, the surplus is reserved and evicted
+     * from the head in one batch, like overflow of {@code offerAll}.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
         }
 
-        putLock.lockInterruptibly();
+        purgeIfDue();
+        Node<E> evicted = null;
+        int evictedCount = 0;
+        putLock.lock();
         try {
-            if (size() == capacity) {
-                enqueue(e);
-                interruptiblyLockedDequeue();
-            } else {
-                enqueue(e);
-                notEmptySignal();
+            this.capacity = capacity;
+            int c = count.get();
+            while (c > capacity) {
+                if (count.compareAndSet(c, capacity)) {
+                    evictedCount = c - capacity;
+                    evicted = detachFirst(evictedCount);
+                    break;
+                }
+                c = count.get();
             }
         } finally {
             putLock.unlock();
         }
+
+        for (int i = 0; i < evictedCount; i++, evicted = evicted.next) {
+            onEviction(detachedItem(evicted, i, evictedCount));
+        }
     }
 
-    private void interruptiblyLockedDequeue() throws InterruptedException {
-        takeLock.lockInterruptibly();
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        Node<E> node = newNode(e);
+        purgeIfDue();
+        E evicted;
+        List<E> overweight;
+        lockPutInterruptibly();
         try {
-            dequeue();
+            enqueue(node);
+            evicted = evictOverflow();
+            overweight = evictOverweight(null);
+            recordOffers(1);
         } finally {
-            takeLock.unlock();
+            putLock.unlock();
         }
+        notEmptySignalIfWaiting();
+        onEviction(evicted);
+        onEviction(overweight);
     }
 
     @Override
@@ -91,95 +301,438 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
             throw new NullPointerException();
         }
 
-        putLock.lock();
+        Node<E> node = newNode(e);
+        purgeIfDue();
+        E evicted;
+        List<E> overweight;
+        lockPut();
         try {
-            if (size() == capacity) {
-                enqueue(e);
-                lockedDeque();
-            } else {
-                enqueue(e);
-                notEmptySignal();
-            }
+            enqueue(node);
+            evicted = evictOverflow();
+            overweight = evictOverweight(null);
+            recordOffers(1);
         } finally {
             putLock.unlock();
         }
+        notEmptySignalIfWaiting();
+        onEviction(evicted);
+        onEviction(overweight);
 
         return true;
     }
 
-    private void lockedDeque() {
-        takeLock.lock();
+    /**
+     * Guarded by {@code putLock}, or by {@code takeLock} after a reservation has been given back.
+     *
+     * @return the evicted element or {@code null}, if the queue isn't overfilled.
+     */
+    private E evictOverflow() {
+        for (int c = count.get(); c > capacity; c = count.get()) {
+            if (count.compareAndSet(c, c - 1)) {
+                return detachFirst(1).takeItem();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Guarded by {@code putLock}, or by {@code takeLock} after a reservation has been given back.
+     * Evicts the head, while the total weight is greater than {@code maxWeight}.
+     * Evicted elements are collected only for the eviction listener, otherwise they are only recorded.
+     *
+     * @param res list, to which evicted elements are added, may be {@code null}.
+     * @return {@code res}, or a list, if elements are evicted for the listener and {@code res} is {@code null}.
+     */
+    private List<E> evictOverweight(List<E> res) {
+        int unheard = 0;
+        while (weight.get() > maxWeight && reserve(1) > 0) {
+            E evicted = detachFirst(1).takeItem();
+            if (evictionListener != null) {
+                res = addTo(res, evicted);
+            } else {
+                unheard++;
+            }
+        }
+        if (unheard > 0) {
+            recordEvictions(unheard);
+        }
+        return res;
+    }
+
+    /**
+     * Inserts {@code elems} at the tail in the order of the array, taking {@code putLock} once.
+     * If there are more elements than {@code capacity}, the leading ones are skipped without being accessed.
+     *
+     * @return {@code true} if the queue changed.
+     * @throws NullPointerException if an inserted element is {@code null}, the queue isn't changed then
+     */
+    public boolean offerAll(E[] elems) {
+        return offerAll(Arrays.asList(elems));
+    }
+
+    /**
+     * Inserts elements of {@code c} at the tail in the iteration order, taking {@code putLock} once.
+     * If there are more elements than {@code capacity}, the leading ones are skipped without being inserted.
+     *
+     * @return {@code true} if the queue changed.
+     * @throws NullPointerException if an inserted element is {@code null}, the queue isn't changed then
+     */
+    public boolean offerAll(Collection<? extends E> c) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+
+        Iterator<? extends E> iterator = c.iterator();
+        for (int skip = c.size() - capacity; skip > 0 && iterator.hasNext(); skip--) {
+            iterator.next();
+        }
+        if (!iterator.hasNext()) {
+            return false;
+        }
+
+        Node<E> first = newNode(requireElement(iterator.next()));
+        Node<E> last = first;
+        int n = 1;
+        while (iterator.hasNext()) {
+            Node<E> node = newNode(requireElement(iterator.next()));
+            node.prev = last;
+            last.next = node;
+            last = node;
+            n++;
+        }
+
+        linkAll(first, last, n);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return offerAll(c);
+    }
+
+    /**
+     * Walks from the closer end under {@code fullyLock}, which is O(min(indexFromHead, size - indexFromHead)) time.
+     *
+     * @return element at position {@code indexFromHead} counting from the head.
+     * @throws IndexOutOfBoundsException if {@code indexFromHead} is not in {@code [0, size)}
+     */
+    public E get(int indexFromHead) {
+        E res;
+        List<E> expired;
+        fullyLock();
         try {
-            dequeue();
+            expired = purgeExpired();
+            int size = count.get();
+            if (indexFromHead < 0 || indexFromHead >= size) {
+                throw new IndexOutOfBoundsException("index: " + indexFromHead + ", size: " + size);
+            }
+            res = nodeAt(indexFromHead, size).item;
         } finally {
-            takeLock.unlock();
+            fullyUnlock();
+        }
+        onEviction(expired);
+        return res;
+    }
+
+    /**
+     * Walks from the tail under {@code fullyLock}, which is O(k) time.
+     *
+     * @return element at position {@code k} counting from the tail, so {@code 0} is the most recent one.
+     * @throws IndexOutOfBoundsException if {@code k} is not in {@code [0, size)}
+     */
+    public E getFromTail(int k) {
+        E res;
+        List<E> expired;
+        fullyLock();
+        try {
+            expired = purgeExpired();
+            int size = count.get();
+            if (k < 0 || k >= size) {
+                throw new IndexOutOfBoundsException("index: " + k + ", size: " + size);
+            }
+            res = nodeAt(size - 1 - k, size).item;
+        } finally {
+            fullyUnlock();
+        }
+        onEviction(expired);
+        return res;
+    }
+
+    /**
+     * Copies up to {@code k} most recent elements to the beginning of {@code dst} in the queue order
+     * under {@code fullyLock}, which is O(k) time.
+     *
+     * @return the number of copied elements, which is {@code min(k, size)}.
+     * @throws IllegalArgumentException if {@code k} is negative or greater than {@code dst.length}
+     */
+    public int lastK(int k, E[] dst) {
+        if (k < 0 || k > dst.length) {
+            throw new IllegalArgumentException("k should be in [0, dst.length]: " + k);
+        }
+
+        int n;
+        List<E> expired;
+        fullyLock();
+        try {
+            expired = purgeExpired();
+            int size = count.get();
+            n = Math.min(k, size);
+            Node<E> node = (n > 0) ? nodeAt(size - n, size) : null;
+            for (int i = 0; i < n; i++, node = node.next) {
+                dst[i] = node.item;
+            }
+        } finally {
+            fullyUnlock();
+        }
+        onEviction(expired);
+        return n;
+    }
+
+    /**
+     * Links the chain of {@code n} nodes at the tail and evicts the overflow from the head at once.
+     */
+    private void linkAll(Node<E> first, Node<E> last, int n) {
+        purgeIfDue();
+        Node<E> evicted = null;
+        int evictedCount = 0;
+        List<E> overweight;
+
+        lockPut();
+        try {
+            stampAll(first, last);
+            if (weigher != null) {
+                weight.getAndAdd(weightOf(first, n));
+            }
+            first.prev = this.last;
+            this.last.next = first;
+            this.last = last;
+            int c = count.addAndGet(n);
+            while (c > capacity) {
+                if (count.compareAndSet(c, capacity)) {
+                    evictedCount = c - capacity;
+                    evicted = detachFirst(evictedCount);
+                    break;
+                }
+                c = count.get();
+            }
+            overweight = evictOverweight(null);
+            recordOffers(n);
+        } finally {
+            putLock.unlock();
+        }
+        notEmptySignalIfWaiting();
+
+        for (int i = 0; i < evictedCount; i++, evicted = evicted.next) {
+            onEviction(detachedItem(evicted, i, evictedCount));
         }
+        onEviction(overweight);
     }
 
     @Override
     public E take() throws InterruptedException {
         E res;
+        List<E> expired;
 
-        takeLock.lockInterruptibly();
+        lockTakeInterruptibly();
         try {
-            while (isEmpty()) {
-                notEmptyCondition.await();
+            expired = purgeExpired();
+            while ((res = tryDequeue()) == null) {
+                waitingConsumers++;
+                try {
+                    if (count.get() == 0) {
+                        awaitNotEmpty();
+                    }
+                } finally {
+                    waitingConsumers--;
+                }
             }
-            res = dequeue();
+            signalNextConsumer();
         } finally {
             takeLock.unlock();
         }
+        recordPolls(1);
+        onEviction(expired);
 
         return res;
     }
 
+    /**
+     * Takes the head without blocking the calling thread.
+     * If the queue is empty, the returned future is completed by the producer,
+     * which inserts an element, after it has released the locks.
+     * Futures are completed in the order of calls.
+     * <p>
+     * A pending future may be cancelled or completed by the caller, then it's removed from pending takes at once.
+     * A future, which has been given an element, can't be cancelled or completed by the caller anymore,
+     * so an element is never taken for a cancelled future.
+     */
+    public CompletableFuture<E> takeAsync() {
+        AsyncTake take = new AsyncTake();
+        List<AsyncTake> completed;
+        List<E> expired;
+
+        takeLock.lock();
+        try {
+            expired = purgeExpired();
+            asyncTakes.add(take);
+            waitingConsumers++;
+            completed = serveAsyncTakes();
+        } finally {
+            takeLock.unlock();
+        }
+        onEviction(expired);
+        complete(completed);
+
+        return take;
+    }
+
     @Override
     public E poll(long timeout, TimeUnit unit) throws InterruptedException {
         E res;
+        List<E> expired;
 
         long nanos = unit.toNanos(timeout);
-        takeLock.lockInterruptibly();
+        lockTakeInterruptibly();
         try {
-            while (count.get() == 0) {
+            expired = purgeExpired();
+            while ((res = tryDequeue()) == null) {
                 if (nanos <= 0) {
-                    return null;
+                    break;
+                }
+                waitingConsumers++;
+                try {
+                    if (count.get() == 0) {
+                        nanos = awaitNotEmpty(nanos);
+                    }
+                } finally {
+                    waitingConsumers--;
                 }
-                nanos = notEmptyCondition.awaitNanos(nanos);
             }
-            res = dequeue();
+            if (res != null) {
+                signalNextConsumer();
+            }
         } finally {
             takeLock.unlock();
         }
+        if (res != null) {
+            recordPolls(1);
+        }
+        onEviction(expired);
 
         return res;
     }
 
     @Override
     public E poll() {
-        if (isEmpty()) {
+        if (count.get() == 0) {
             return null;
         }
 
-        takeLock.lock();
+        E res;
+        List<E> expired;
+        lockTake();
         try {
-            return (!isEmpty()) ? dequeue() : null;
+            expired = purgeExpired();
+            res = tryDequeue();
         } finally {
             takeLock.unlock();
         }
+        if (res != null) {
+            recordPolls(1);
+        }
+        onEviction(expired);
+        return res;
     }
 
     @Override
     public E peek() {
-        if (isEmpty()) {
+        if (count.get() == 0) {
             return null;
         }
 
+        E res = null;
+        List<E> expired;
         takeLock.lock();
         try {
-            return (!isEmpty()) ? firstNode().item : null;
+            expired = purgeExpired();
+            // producers evict the head under putLock only, which takes the item after moving the sentinel over it,
+            // so an item, which has been taken meanwhile, is read again from the new first node
+            Node<E> first;
+            while (res == null && count.get() > 0 && (first = firstNode()) != null) {
+                res = first.item;
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        onEviction(expired);
+        return res;
+    }
+
+    /**
+     * Removes up to {@code maxElements} elements from the head under one {@code takeLock} hold,
+     * then passes them to {@code consumer} in the queue order outside the lock.
+     * If {@code consumer} throws an exception, the rest of the removed elements are dropped.
+     *
+     * @return the number of removed elements.
+     */
+    public int drain(Consumer<? super E> consumer, int maxElements) {
+        if (consumer == null) {
+            throw new NullPointerException();
+        }
+        if (maxElements <= 0 || count.get() == 0) {
+            return 0;
+        }
+
+        Node<E> node;
+        int n;
+        List<E> expired;
+        lockTake();
+        try {
+            expired = purgeExpired();
+            n = reserve(maxElements);
+            node = (n > 0) ? detachFirst(n) : null;
+        } finally {
+            takeLock.unlock();
+        }
+        recordPolls(n);
+        onEviction(expired);
+
+        for (int i = 0; i < n; i++, node = node.next) {
+            consumer.accept(detachedItem(node, i, n));
+        }
+        return n;
+    }
+
+    /**
+     * Moves up to {@code dst.length} elements from the head to the beginning of {@code dst}
+     * under one {@code takeLock} hold.
+     *
+     * @return the number of moved elements.
+     */
+    public int pollBatch(E[] dst) {
+        if (dst.length == 0 || count.get() == 0) {
+            return 0;
+        }
+
+        int n;
+        List<E> expired;
+        lockTake();
+        try {
+            expired = purgeExpired();
+            n = reserve(dst.length);
+            Node<E> node = (n > 0) ? detachFirst(n) : null;
+            for (int i = 0; i < n; i++, node = node.next) {
+                dst[i] = detachedItem(node, i, n);
+            }
         } finally {
             takeLock.unlock();
         }
+        recordPolls(n);
+        onEviction(expired);
+        return n;
     }
 
     @Override
@@ -190,12 +743,9 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
 
         fullyLock();
         try {
-            for (Node<E> before = beforeFirstNode(), node = firstNode();
-                 node != null;
-                 before = node, node = node.next) {
-
+            for (Node<E> node = firstNode(); node != null; node = node.next) {
                 if (Objects.equals(obj, node.item)) {
-                    unlink(node, before);
+                    unlink(node);
                     return true;
                 }
             }
@@ -205,96 +755,101 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
         }
     }
 
+    /**
+     * Looks through a snapshot without locks.
+     */
     @Override
     public boolean contains(Object obj) {
-        if (isEmpty()) {
+        if (obj == null || count.get() == 0) {
             return false;
         }
 
-        fullyLock();
-        try {
-            if (isEmpty()) {
-                return false;
-            }
-
-            for (Node<E> node = firstNode(); node != null; node = node.next) {
-                if (Objects.equals(obj, node.item)) {
-                    return true;
-                }
+        Snapshot<E> snapshot = snapshot();
+        Node<E> node = snapshot.first;
+        for (int i = 0; i < snapshot.size; i++, node = node.next) {
+            if (Objects.equals(obj, node.item)) {
+                return true;
             }
-            return false;
-        } finally {
-            fullyUnlock();
         }
+        return false;
     }
 
+    /**
+     * Copies a snapshot without locks. Elements, which have been taken meanwhile, may be skipped.
+     */
     @Override
     public Object[] toArray() {
-        fullyLock();
-        try {
-            Object[] res = new Object[size()];
-            int i = 0;
-            for (Node<E> node = firstNode(); node != null; node = node.next) {
-                res[i++] = node.item;
+        Snapshot<E> snapshot = snapshot();
+        Object[] res = new Object[snapshot.size];
+        int n = 0;
+        Node<E> node = snapshot.first;
+        for (int i = 0; i < snapshot.size; i++, node = node.next) {
+            E item = node.item;
+            if (item != null) {
+                res[n++] = item;
             }
-            return res;
-        } finally {
-            fullyUnlock();
         }
+        return (n == res.length) ? res : Arrays.copyOf(res, n);
     }
 
+    /**
+     * Copies a snapshot without locks. Elements, which have been taken meanwhile, may be skipped.
+     */
     @Override
     @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
-        fullyLock();
-        try {
-            int size = size();
-            if (a.length < size) {
-                a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
-            }
-
-            int i = 0;
-            for (Node<E> node = firstNode(); node != null; node = node.next) {
-                a[i++] = (T) node.item;
-            }
-            if (a.length > i) {
-                a[i] = null;
+        Snapshot<E> snapshot = snapshot();
+        int size = snapshot.size;
+        T[] res = (a.length >= size) ? a : (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+
+        int n = 0;
+        Node<E> node = snapshot.first;
+        for (int i = 0; i < size; i++, node = node.next) {
+            E item = node.item;
+            if (item != null) {
+                res[n++] = (T) item;
             }
-            return a;
-        } finally {
-            fullyUnlock();
         }
+        if (res != a && n < size) {
+            return Arrays.copyOf(res, n);
+        }
+        if (res.length > n) {
+            res[n] = null;
+        }
+        return res;
     }
 
     @Override
     public void clear() {
         fullyLock();
         try {
-            super.clear();
+            beforeFirst = last = Node.emptyNode();
+            count.set(0);
+            weight.set(0);
         } finally {
             fullyUnlock();
         }
     }
 
+    /**
+     * Prints a snapshot without locks.
+     */
     @Override
     public String toString() {
-        fullyLock();
-        try {
-            Node<E> node = firstNode();
-            if (node == null) {
-                return "[]";
-            }
+        Snapshot<E> snapshot = snapshot();
+        if (snapshot.size == 0) {
+            return "[]";
+        }
 
-            StringJoiner joiner = new StringJoiner(", ", "[", "]");
-            for (; node != null; node = node.next) {
-                E item = node.item;
-                String s = (item == this) ? "(this)" : item.toString();
-                joiner.add(s);
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        Node<E> node = snapshot.first;
+        for (int i = 0; i < snapshot.size; i++, node = node.next) {
+            E item = node.item;
+            if (item != null) {
+                joiner.add((item == this) ? "(this)" : item.toString());
             }
-            return joiner.toString();
-        } finally {
-            fullyUnlock();
         }
+        return joiner.toString();
     }
 
     @Override
@@ -307,6 +862,9 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
         return drainTo(c, Integer.MAX_VALUE);
     }
 
+    /**
+     * If adding to {@code c} fails, the rest of the elements reserved for draining are dropped.
+     */
     @Override
     public int drainTo(Collection<? super E> c, int maxElements) {
         if (c == null) {
@@ -319,44 +877,323 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
             return 0;
         }
 
-        takeLock.lock();
+        int n;
+        List<E> expired;
+        lockTake();
         try {
-            int n = Math.min(maxElements, size());
-
-            Node<E> prevNode = beforeFirstNode();
-            int i = 0;
-            try {
-                while (i < n) {
-                    Node<E> node = prevNode.next;
-                    c.add(node.item);
-                    node.item = null;
-                    prevNode.next = prevNode;
-                    prevNode = node;
-                    i++;
-                }
-                return n;
-            } finally {
-                if (i > 0) {
-                    beforeFirst = prevNode;
-                    count.getAndAdd(-i);
-                }
+            expired = purgeExpired();
+            n = reserve(maxElements);
+            Node<E> node = (n > 0) ? detachFirst(n) : null;
+            for (int i = 0; i < n; i++, node = node.next) {
+                c.add(detachedItem(node, i, n));
             }
         } finally {
             takeLock.unlock();
         }
+        recordPolls(n);
+        onEviction(expired);
+        return n;
     }
 
+    /**
+     * @return iterator over a snapshot of the queue, which is taken at once and then iterated without locks.
+     * The snapshot keeps the removed elements reachable, until the iterator is discarded,
+     * except the elements, which have been taken from the head meanwhile, which may be skipped.
+     */
     @Override
     public Iterator<E> iterator() {
         return new QueueIterator();
     }
 
+    /**
+     * @return spliterator over a snapshot of the queue, which is taken at once and then split
+     * into contiguous ranges without locks. Elements, which are taken from the head during traversal, are skipped,
+     * so the size of the snapshot is only an estimate, and the spliterator isn't {@link Spliterator#SIZED}.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        Snapshot<E> snapshot = snapshot();
+        return new QueueSpliterator<>(snapshot.first, snapshot.size);
+    }
+
+
+    private void onEviction(E evicted) {
+        if (evicted == null) {
+            return;
+        }
+        recordEvictions(1);
+        if (evictionListener != null) {
+            evictionListener.onEviction(evicted);
+        }
+    }
+
+    private void onEviction(List<E> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        recordEvictions(evicted.size());
+        if (evictionListener != null) {
+            evicted.forEach(evictionListener::onEviction);
+        }
+        evicted.clear();
+        spareEvicted.lazySet(evicted);
+    }
+
+    /**
+     * The first attempt is the same as of {@code lock()}, so waiting is timed and wrapped
+     * by a {@link LockWaitEvent} only when the lock is contended.
+     */
+    private void lockPut() {
+        if (!putLock.tryLock()) {
+            long start = System.nanoTime();
+            Object event = events.beginLockWait();
+            putLock.lock();
+            onLockWait(putLock, event, start);
+        }
+    }
+
+    private void lockPutInterruptibly() throws InterruptedException {
+        if (!putLock.tryLock()) {
+            long start = System.nanoTime();
+            Object event = events.beginLockWait();
+            putLock.lockInterruptibly();
+            onLockWait(putLock, event, start);
+        }
+    }
+
+    private void lockTake() {
+        if (!takeLock.tryLock()) {
+            long start = System.nanoTime();
+            Object event = events.beginLockWait();
+            takeLock.lock();
+            onLockWait(takeLock, event, start);
+        }
+    }
+
+    private void lockTakeInterruptibly() throws InterruptedException {
+        if (!takeLock.tryLock()) {
+            long start = System.nanoTime();
+            Object event = events.beginLockWait();
+            takeLock.lockInterruptibly();
+            onLockWait(takeLock, event, start);
+        }
+    }
+
+    private void onLockWait(ReentrantLock lock, Object event, long start) {
+        boolean isPutLock = (lock == putLock);
+        events.commitLockWait(event, isPutLock ? "putLock" : "takeLock");
+        if (metrics != null) {
+            long nanos = System.nanoTime() - start;
+            if (isPutLock) {
+                metrics.recordPutLockWait(nanos);
+            } else {
+                metrics.recordTakeLockWait(nanos);
+            }
+        }
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private void awaitNotEmpty() throws InterruptedException {
+        long start = System.nanoTime();
+        Object event = events.beginBlockedTake();
+        try {
+            notEmptyCondition.await();
+        } finally {
+            onBlockedTake("take", event, start);
+        }
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     *
+     * @return the remaining time, like {@link Condition#awaitNanos(long)}.
+     */
+    private long awaitNotEmpty(long nanos) throws InterruptedException {
+        long start = System.nanoTime();
+        Object event = events.beginBlockedTake();
+        try {
+            return notEmptyCondition.awaitNanos(nanos);
+        } finally {
+            onBlockedTake("poll", event, start);
+        }
+    }
+
+    private void onBlockedTake(String operation, Object event, long start) {
+        events.commitBlockedTake(event, operation);
+        if (metrics != null) {
+            metrics.recordTakeBlocked(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Guarded by {@code putLock}, so that the peak size is recorded after the overflow has been evicted.
+     */
+    private void recordOffers(int n) {
+        if (metrics != null) {
+            metrics.recordOffers(n);
+            metrics.recordSize(count.get());
+        }
+    }
+
+    private void recordPolls(int n) {
+        if (metrics != null) {
+            metrics.recordPolls(n);
+        }
+    }
+
+    private void recordEvictions(int n) {
+        if (metrics != null) {
+            metrics.recordEvictions(n);
+        }
+        events.evicted(n);
+    }
+
+    /**
+     * Called without locks. Takes {@code takeLock} only if the head may have expired.
+     */
+    private void purgeIfDue() {
+        if (!isPurgeDue()) {
+            return;
+        }
+
+        List<E> expired;
+        takeLock.lock();
+        try {
+            expired = purgeExpired();
+        } finally {
+            takeLock.unlock();
+        }
+        onEviction(expired);
+    }
+
+    private boolean isPurgeDue() {
+        return maxAgeMillis > 0 && count.get() > 0 && ticker.millis() - expiryDeadline >= 0;
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     * Drops expired elements from the head, which are passed to the eviction listener outside the lock.
+     * Stamps don't decrease from the head to the tail, so only the expired elements are looked through.
+     * <p>
+     * A node is reserved and then detached, only if it's still the head, since an evicting producer
+     * may detach the head concurrently. Then the reservation is given back, and the overflow or overweight,
+     * which the producer might have missed because of it, is evicted here.
+     *
+     * @return expired and evicted elements, or {@code null} if there are none.
+     */
+    @SuppressWarnings("unchecked")
+    private List<E> purgeExpired() {
+        if (!isPurgeDue()) {
+            return null;
+        }
+
+        long now = ticker.millis();
+        List<E> res = null;
+        while (true) {
+            Node<E> before = beforeFirst;
+            Node<E> first = before.next;
+            if (first == null || !isExpired(first, now)) {
+                if (first != null) {
+                    expiryDeadline = stampOf(first) + maxAgeMillis;
+                }
+                return res;
+            }
+            if (reserve(1) == 0) {
+                return res;
+            }
+
+            if (BEFORE_FIRST.compareAndSet(this, before, first)) {
+                first.prev = null;
+                if (weigher != null) {
+                    weight.getAndAdd(-weightOf(first, 1));
+                }
+                res = addTo(res, first.takeItem());
+            } else {
+                count.incrementAndGet();
+                E evicted = evictOverflow();
+                if (evicted != null) {
+                    res = addTo(res, evicted);
+                }
+                res = evictOverweight(res);
+            }
+        }
+    }
+
+    /**
+     * @return {@code list}, or the spare list or a new one with {@code e}, if {@code list} is {@code null}.
+     */
+    private List<E> addTo(List<E> list, E e) {
+        if (list == null) {
+            list = spareEvicted.getAndSet(null);
+            if (list == null) {
+                list = new ArrayList<>();
+            }
+        }
+        list.add(e);
+        return list;
+    }
+
+    private boolean isExpired(Node<E> node, long now) {
+        return now - stampOf(node) >= maxAgeMillis;
+    }
+
+    private static long stampOf(Node<?> node) {
+        return ((StampedNode<?>) node).stamp;
+    }
+
+    private Node<E> newNode(E e) {
+        if (maxAgeMillis == 0 && weigher == null) {
+            return new Node<>(e);
+        }
+        return new StampedNode<>(e, (weigher != null) ? weigh(e) : 0);
+    }
+
+    private long weigh(E e) {
+        long res = weigher.weigh(e);
+        if (res < 0) {
+            throw new IllegalArgumentException("weight should not be negative: " + res);
+        }
+        return res;
+    }
+
+    /**
+     * @return total weight of {@code n} nodes starting from {@code node}.
+     */
+    private static long weightOf(Node<?> node, int n) {
+        long res = 0;
+        for (int i = 0; i < n; i++, node = node.next) {
+            res += ((StampedNode<?>) node).weight;
+        }
+        return res;
+    }
+
+    /**
+     * Guarded by {@code putLock}, so that stamps don't decrease from the head to the tail.
+     */
+    private void stampAll(Node<E> first, Node<E> last) {
+        if (maxAgeMillis == 0) {
+            return;
+        }
+        long now = ticker.millis();
+        for (Node<E> node = first; ; node = node.next) {
+            ((StampedNode<E>) node).stamp = now;
+            if (node == last) {
+                return;
+            }
+        }
+    }
 
     /**
      * Guarded by {@code putLock}.
      */
-    private void enqueue(E e) {
-        Node<E> node = new Node<>(e);
+    private void enqueue(Node<E> node) {
+        stampAll(node, node);
+        if (weigher != null) {
+            weight.getAndAdd(((StampedNode<E>) node).weight);
+        }
+        node.prev = last;
         last.next = node;
         last = node;
 
@@ -365,44 +1202,157 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
 
     /**
      * Guarded by {@code takeLock}.
+     *
+     * @return the head element or {@code null}, if the queue is empty.
      */
-    private E dequeue() {
-        return unlink(firstNode(), beforeFirstNode());
+    private E tryDequeue() {
+        return (reserve(1) > 0) ? detachFirst(1).takeItem() : null;
     }
 
     /**
-     * Guarded by {@code takeLock}.
-     * @param node {@code not null}.
+     * Decrements {@code count} by up to {@code max}, while it is positive.
+     *
+     * @return the number of reserved nodes, which then should be detached by {@link #detachFirst(int)}.
+     */
+    private int reserve(int max) {
+        while (true) {
+            int c = count.get();
+            if (c == 0) {
+                return 0;
+            }
+            int n = Math.min(c, max);
+            if (count.compareAndSet(c, c - n)) {
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Moves the {@code beforeFirst} sentinel over {@code n} reserved nodes.
+     * The last of them becomes the new sentinel, so the caller should take its item by {@link Node#takeItem()}.
+     * Links of the detached nodes stay as they are for snapshots, except {@code prev} of the new sentinel,
+     * which is cleared, so that the sentinel doesn't keep the detached nodes reachable.
+     * <p>
+     * Guarded by {@code takeLock} or {@code putLock}, so that nodes aren't unlinked from the middle meanwhile.
+     *
+     * @return the first detached node.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E> detachFirst(int n) {
+        while (true) {
+            Node<E> before = beforeFirst;
+            Node<E> sentinel = nodeAfter(before, n);
+            if (BEFORE_FIRST.compareAndSet(this, before, sentinel)) {
+                sentinel.prev = null;
+                if (weigher != null) {
+                    weight.getAndAdd(-weightOf(before.next, n));
+                }
+                return before.next;
+            }
+        }
+    }
+
+    /**
+     * @return item of the {@code i}-th of {@code n} nodes detached by {@link #detachFirst(int)},
+     * which is taken from the last of them, since it has become the sentinel.
+     */
+    private static <E> E detachedItem(Node<E> node, int i, int n) {
+        return (i == n - 1) ? node.takeItem() : node.item;
+    }
+
+    /**
+     * Guarded by {@code fullyLock}.
+     * Links of the existing nodes aren't changed for snapshots,
+     * so the nodes before {@code node} are replaced with copies linked to the node after it.
+     *
      * @param node {@code not null}.
      */
-    private E unlink(Node<E> node, Node<E> prev) {
+    private void unlink(Node<E> node) {
+        Node<E> newBeforeFirst = Node.emptyNode();
+        Node<E> prev = newBeforeFirst;
+        for (Node<E> n = firstNode(); n != node; n = n.next) {
+            Node<E> copy = n.copy();
+            copy.prev = prev;
+            prev.next = copy;
+            prev = copy;
+        }
         prev.next = node.next;
-
-        E res = node.item;
-        node.item = null;
-        node.next = null;
+        if (node.next != null) {
+            node.next.prev = prev;
+        }
 
         if (last == node) {
             last = prev;
         }
+        beforeFirst = newBeforeFirst;
 
         count.decrementAndGet();
+        if (weigher != null) {
+            weight.getAndAdd(-weightOf(node, 1));
+        }
+    }
 
-        return res;
+    private Node<E> firstNode() {
+        return beforeFirst.next;
+    }
+
+    private Node<E> beforeFirstNode() {
+        return beforeFirst;
     }
 
     /**
-     * Guarded by {@code takeLock}.
+     * Takes the first node and the size at once, which is O(1) time.
+     * Nodes of the snapshot aren't relinked afterwards, so it can be walked without locks.
      */
-    private Node<E> firstNode() {
-        return beforeFirst.next;
+    private Snapshot<E> snapshot() {
+        Snapshot<E> res;
+        List<E> expired;
+        fullyLock();
+        try {
+            expired = purgeExpired();
+            res = new Snapshot<>(firstNode(), count.get());
+        } finally {
+            fullyUnlock();
+        }
+        onEviction(expired);
+        return res;
+    }
+
+    private static long maxAgeMillis(long maxAge, TimeUnit unit) {
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge should be greater than 0: " + maxAge);
+        }
+        return Math.max(1, unit.toMillis(maxAge));
+    }
+
+    private static <E> E requireElement(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return e;
     }
 
     /**
-     * Guarded by {@code takeLock}.
+     * Guarded by {@code fullyLock}.
+     *
+     * @return node at position {@code i} counting from the head, which is reached from the closer end.
      */
-    private Node<E> beforeFirstNode() {
-        return beforeFirst;
+    private Node<E> nodeAt(int i, int size) {
+        if (i < size / 2) {
+            return nodeAfter(beforeFirstNode(), i + 1);
+        }
+        Node<E> node = last;
+        for (int j = size - 1; j > i; j--) {
+            node = node.prev;
+        }
+        return node;
+    }
+
+    private static <E> Node<E> nodeAfter(Node<E> node, int distance) {
+        for (int i = 0; i < distance; i++) {
+            node = node.next;
+        }
+        return node;
     }
 
     private void fullyLock() {
@@ -415,19 +1365,84 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
         putLock.unlock();
     }
 
-    private void notEmptySignal() {
+    /**
+     * Called by producers after {@code count} is incremented,
+     * while a consumer increments {@code waitingConsumers} before it rechecks {@code count} and parks.
+     */
+    private void notEmptySignalIfWaiting() {
+        if (waitingConsumers == 0) {
+            return;
+        }
+        List<AsyncTake> completed;
         takeLock.lock();
         try {
-            notEmptyCondition.signal();
+            completed = serveAsyncTakes();
+            if (count.get() > 0) {
+                notEmptyCondition.signal();
+            }
         } finally {
             takeLock.unlock();
         }
+        complete(completed);
     }
 
+    /**
+     * Guarded by {@code takeLock}.
+     * Takes elements for pending {@link #takeAsync()} futures, which should be completed outside the lock.
+     *
+     * @return served takes, or {@code null} if there are none.
+     */
+    private List<AsyncTake> serveAsyncTakes() {
+        List<AsyncTake> res = null;
+        AsyncTake take;
+        // takes, which are completed by callers, are removed under takeLock, so every queued take is pending
+        while ((take = asyncTakes.peek()) != null) {
+            E item = tryDequeue();
+            if (item == null) {
+                break;
+            }
+            take.serve(item);
+            asyncTakes.poll();
+            waitingConsumers--;
+            if (res == null) {
+                res = new ArrayList<>();
+            }
+            res.add(take);
+        }
+        return res;
+    }
 
+    private void complete(List<AsyncTake> takes) {
+        if (takes == null) {
+            return;
+        }
+        for (AsyncTake take : takes) {
+            take.completeServed();
+            recordPolls(1);
+        }
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private void signalNextConsumer() {
+        if (waitingConsumers > 0 && count.get() > 0) {
+            notEmptyCondition.signal();
+        }
+    }
+
+
+    /**
+     * {@code next} of a node is set once, when it's linked at the tail.
+     * Nodes are removed by moving the sentinel or by copying the nodes before them.
+     * {@code prev} is relinked to the copies and is followed under {@code fullyLock} only.
+     * {@code item} of a node is cleared, when the node becomes the sentinel, so that the queue doesn't keep
+     * the last taken element reachable. Snapshots, which still hold the node, skip it then.
+     */
     private static class Node<E> {
         E item;
         Node<E> next;
+        Node<E> prev;
 
         public static <E> Node<E> emptyNode() {
             return new Node<>(null);
@@ -436,66 +1451,181 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
         Node(E item) {
             this.item = item;
         }
+
+        Node<E> copy() {
+            return new Node<>(item);
+        }
+
+        /**
+         * Called by the thread, which has made this node the sentinel.
+         * A plain write is enough, since snapshots, which read the item concurrently, may see it either way.
+         */
+        E takeItem() {
+            E res = item;
+            item = null;
+            return res;
+        }
+    }
+
+    /**
+     * Node of a queue with a max age or a weigher.
+     * {@code stamp} is the insertion time, which is set before linking.
+     */
+    private static class StampedNode<E> extends Node<E> {
+        final long weight;
+        long stamp;
+
+        StampedNode(E item, long weight) {
+            super(item);
+            this.weight = weight;
+        }
+
+        @Override
+        Node<E> copy() {
+            StampedNode<E> copy = new StampedNode<>(item, weight);
+            copy.stamp = stamp;
+            return copy;
+        }
+    }
+
+    /**
+     * Future of {@link #takeAsync()}, which is claimed under {@code takeLock} either by the queue, when it's given
+     * an element, or by the caller, when it's cancelled or completed, so that they don't race for completion.
+     */
+    private final class AsyncTake extends CompletableFuture<E> {
+        /**
+         * Guarded by {@code takeLock}.
+         */
+        private boolean claimed;
+        private E item;
+
+        /**
+         * Guarded by {@code takeLock}.
+         */
+        void serve(E e) {
+            claimed = true;
+            item = e;
+        }
+
+        /**
+         * Called outside the locks after {@link #serve(Object)}.
+         */
+        void completeServed() {
+            E e = item;
+            item = null;
+            super.complete(e);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return claimByCaller() ? super.cancel(mayInterruptIfRunning) : isCancelled();
+        }
+
+        @Override
+        public boolean complete(E value) {
+            return claimByCaller() && super.complete(value);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            return claimByCaller() && super.completeExceptionally(ex);
+        }
+
+        /**
+         * Removes the take from pending ones, unless it has been claimed already.
+         */
+        private boolean claimByCaller() {
+            takeLock.lock();
+            try {
+                if (claimed) {
+                    return false;
+                }
+                claimed = true;
+                if (asyncTakes.remove(this)) {
+                    waitingConsumers--;
+                }
+                return true;
+            } finally {
+                takeLock.unlock();
+            }
+        }
+    }
+
+    private static class Snapshot<E> {
+        final Node<E> first;
+        final int size;
+
+        Snapshot(Node<E> first, int size) {
+            this.first = first;
+            this.size = size;
+        }
     }
 
     /**
+     * Iterator over a {@link Snapshot}, which is a
      * <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
-     *     <i>Weakly consistent</i>
-     * </a> iterator.
+     *     <i>weakly consistent</i>
+     * </a> view of the queue.
      */
     private class QueueIterator implements Iterator<E> {
 
         private Node<E> lastRet;
         private Node<E> current;
-        private E currentElem;
+        private int remaining;
+
+        /**
+         * Item of {@code nextNode}, which is read ahead, so that {@link #next()} returns it,
+         * even if the node becomes the sentinel after {@link #hasNext()}.
+         */
+        private Node<E> nextNode;
+        private E nextItem;
 
         public QueueIterator() {
-            fullyLock();
-            try {
-                current = firstNode();
-                if (current != null) {
-                    currentElem = current.item;
-                }
-            } finally {
-                fullyUnlock();
-            }
+            Snapshot<E> snapshot = snapshot();
+            current = snapshot.first;
+            remaining = snapshot.size;
+            advance();
         }
 
         @Override
         public boolean hasNext() {
-            return current != null;
+            return nextNode != null;
         }
 
         @Override
         public E next() {
-            fullyLock();
-            try {
-                if (current == null) {
-                    throw new NoSuchElementException();
-                }
-                E res = currentElem;
-                lastRet = current;
-                current = nextNode(current);
-                currentElem = (current != null) ? current.item : null;
-                return res;
-            } finally {
-                fullyUnlock();
+            if (nextNode == null) {
+                throw new NoSuchElementException();
             }
+            E res = nextItem;
+            lastRet = nextNode;
+            advance();
+            return res;
         }
 
-        private Node<E> nextNode(Node<E> node) {
-            while (true) {
-                Node<E> next = node.next;
-                if (next == node) {
-                    return firstNode();
+        /**
+         * Reads ahead the next node of the snapshot, which still has its item.
+         */
+        private void advance() {
+            nextNode = null;
+            nextItem = null;
+            while (remaining > 0) {
+                Node<E> node = current;
+                if (--remaining > 0) {
+                    current = current.next;
                 }
-                if (next == null || next.item != null) {
-                    return next;
+                E item = node.item;
+                if (item != null) {
+                    nextNode = node;
+                    nextItem = item;
+                    return;
                 }
-                node = next;
             }
         }
 
+        /**
+         * Removes the last returned element, unless it has been removed from the queue already.
+         */
         @Override
         public void remove() {
             if (lastRet == null) {
@@ -506,11 +1636,9 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
             try {
                 Node<E> node = lastRet;
                 lastRet = null;
-                for (Node<E> prev = beforeFirstNode(), n = firstNode();
-                     n != null;
-                     prev = n, n = n.next) {
+                for (Node<E> n = firstNode(); n != null; n = n.next) {
                     if (n == node) {
-                        unlink(n, prev);
+                        unlink(n);
                         break;
                     }
                 }
@@ -519,4 +1647,77 @@ public class MostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E> imple
             }
         }
     }
+
+    /**
+     * Spliterator over a {@link Snapshot}, which splits it into two contiguous halves
+     * by walking to the middle node.
+     */
+    private static class QueueSpliterator<E> implements Spliterator<E> {
+
+        private Node<E> current;
+        private int remaining;
+
+        QueueSpliterator(Node<E> first, int size) {
+            this.current = first;
+            this.remaining = size;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            while (remaining > 0) {
+                E item = current.item;
+                if (--remaining > 0) {
+                    current = current.next;
+                }
+                if (item != null) {
+                    action.accept(item);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            int n = remaining;
+            remaining = 0;
+            for (Node<E> node = current; n > 0; n--) {
+                E item = node.item;
+                if (item != null) {
+                    action.accept(item);
+                }
+                if (n > 1) {
+                    node = node.next;
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int half = remaining >>> 1;
+            if (half == 0) {
+                return null;
+            }
+            QueueSpliterator<E> prefix = new QueueSpliterator<>(current, half);
+            current = nodeAfter(current, half);
+            remaining -= half;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+    }
 }
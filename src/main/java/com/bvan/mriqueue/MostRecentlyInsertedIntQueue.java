@@ -0,0 +1,189 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+
+/**
+ * Not tread-safe implementation of MostRecentlyInsertedQueue for {@code int} values.
+ * <p>
+ * Values are kept unboxed in a preallocated {@code int[]} ring,
+ * so nothing is allocated after construction by {@code offerInt}, {@code pollInt} and {@code peekInt}.
+ *
+ * @author bvanchuhov
+ */
+public class MostRecentlyInsertedIntQueue extends AbstractQueue<Integer> implements Queue<Integer> {
+
+    private final int capacity;
+    private final int missingValue;
+
+    private final int[] items;
+    private int head;
+    private int size;
+
+    private int mod;
+
+    /**
+     * Creates a queue, which returns {@code 0} from {@link #pollInt()} and {@link #peekInt()} when it is empty.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedIntQueue(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param missingValue returned from {@link #pollInt()} and {@link #peekInt()} when the queue is empty.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedIntQueue(int capacity, int missingValue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.missingValue = missingValue;
+        this.items = new int[capacity];
+    }
+
+    public int missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean offerInt(int e) {
+        if (size == capacity) {
+            items[head] = e;
+            head = inc(head);
+            mod++;
+        } else {
+            items[index(size)] = e;
+            size++;
+            mod++;
+        }
+        return true;
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public int pollInt() {
+        if (isEmpty()) {
+            return missingValue;
+        }
+
+        int res = items[head];
+        head = inc(head);
+
+        size--;
+        mod++;
+
+        return res;
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public int peekInt() {
+        return (!isEmpty()) ? items[head] : missingValue;
+    }
+
+    @Override
+    public boolean offer(Integer e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return offerInt(e);
+    }
+
+    @Override
+    public Integer poll() {
+        return (!isEmpty()) ? pollInt() : null;
+    }
+
+    @Override
+    public Integer peek() {
+        return (!isEmpty()) ? items[head] : null;
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+        mod++;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new QueueIterator();
+    }
+
+    /**
+     * Removes the value at position {@code i} (counting from the head)
+     * by shifting the following values one slot towards the head.
+     */
+    private void removeAt(int i) {
+        int index = index(i);
+        for (int j = i + 1; j < size; j++) {
+            int nextIndex = inc(index);
+            items[index] = items[nextIndex];
+            index = nextIndex;
+        }
+
+        size--;
+        mod++;
+    }
+
+    /**
+     * @return index of a slot, which is {@code i} positions after the head.
+     */
+    private int index(int i) {
+        int index = head + i;
+        return (index >= capacity) ? index - capacity : index;
+    }
+
+    private int inc(int index) {
+        return (++index == capacity) ? 0 : index;
+    }
+
+    private class QueueIterator implements PrimitiveIterator.OfInt {
+        private int lastRet = -1;
+        private int cursor = 0;
+        private int expectedMod = mod;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the queue has been changed during iteration.
+         */
+        @Override
+        public int nextInt() {
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            lastRet = cursor++;
+            return items[index(lastRet)];
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastRet);
+            cursor = lastRet;
+            lastRet = -1;
+            expectedMod = mod;
+        }
+    }
+}
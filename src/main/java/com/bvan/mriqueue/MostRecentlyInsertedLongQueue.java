@@ -0,0 +1,189 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+
+/**
+ * Not tread-safe implementation of MostRecentlyInsertedQueue for {@code long} values.
+ * <p>
+ * Values are kept unboxed in a preallocated {@code long[]} ring,
+ * so nothing is allocated after construction by {@code offerLong}, {@code pollLong} and {@code peekLong}.
+ *
+ * @author bvanchuhov
+ */
+public class MostRecentlyInsertedLongQueue extends AbstractQueue<Long> implements Queue<Long> {
+
+    private final int capacity;
+    private final long missingValue;
+
+    private final long[] items;
+    private int head;
+    private int size;
+
+    private int mod;
+
+    /**
+     * Creates a queue, which returns {@code 0L} from {@link #pollLong()} and {@link #peekLong()} when it is empty.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedLongQueue(int capacity) {
+        this(capacity, 0L);
+    }
+
+    /**
+     * @param missingValue returned from {@link #pollLong()} and {@link #peekLong()} when the queue is empty.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedLongQueue(int capacity, long missingValue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.missingValue = missingValue;
+        this.items = new long[capacity];
+    }
+
+    public long missingValue() {
+        return missingValue;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean offerLong(long e) {
+        if (size == capacity) {
+            items[head] = e;
+            head = inc(head);
+            mod++;
+        } else {
+            items[index(size)] = e;
+            size++;
+            mod++;
+        }
+        return true;
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public long pollLong() {
+        if (isEmpty()) {
+            return missingValue;
+        }
+
+        long res = items[head];
+        head = inc(head);
+
+        size--;
+        mod++;
+
+        return res;
+    }
+
+    /**
+     * @return head of the queue or {@link #missingValue()} if the queue is empty.
+     */
+    public long peekLong() {
+        return (!isEmpty()) ? items[head] : missingValue;
+    }
+
+    @Override
+    public boolean offer(Long e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return offerLong(e);
+    }
+
+    @Override
+    public Long poll() {
+        return (!isEmpty()) ? pollLong() : null;
+    }
+
+    @Override
+    public Long peek() {
+        return (!isEmpty()) ? items[head] : null;
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+        mod++;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new QueueIterator();
+    }
+
+    /**
+     * Removes the value at position {@code i} (counting from the head)
+     * by shifting the following values one slot towards the head.
+     */
+    private void removeAt(int i) {
+        int index = index(i);
+        for (int j = i + 1; j < size; j++) {
+            int nextIndex = inc(index);
+            items[index] = items[nextIndex];
+            index = nextIndex;
+        }
+
+        size--;
+        mod++;
+    }
+
+    /**
+     * @return index of a slot, which is {@code i} positions after the head.
+     */
+    private int index(int i) {
+        int index = head + i;
+        return (index >= capacity) ? index - capacity : index;
+    }
+
+    private int inc(int index) {
+        return (++index == capacity) ? 0 : index;
+    }
+
+    private class QueueIterator implements PrimitiveIterator.OfLong {
+        private int lastRet = -1;
+        private int cursor = 0;
+        private int expectedMod = mod;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the queue has been changed during iteration.
+         */
+        @Override
+        public long nextLong() {
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            lastRet = cursor++;
+            return items[index(lastRet)];
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastRet);
+            cursor = lastRet;
+            lastRet = -1;
+            expectedMod = mod;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.bvan.mriqueue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Publisher} over {@link MostRecentlyInsertedBlockingQueue}, which delivers taken elements
+ * to subscribers as long as they have demand.
+ * <p>
+ * Overflow is latest-wins by the queue itself: elements aren't taken while subscribers have no demand,
+ * so a full queue evicts the oldest ones, and a slow subscriber receives the most recent elements.
+ * Each element is delivered to one of subscribers, like with competing consumers of the queue.
+ * <p>
+ * A subscriber waiting on the empty queue doesn't hold a thread: it has a pending
+ * {@link MostRecentlyInsertedBlockingQueue#takeAsync()} future, which is completed by a producer,
+ * and {@code onNext} is called by a task of {@code executor}.
+ * The publisher never calls {@code onComplete}, as the queue has no end.
+ *
+ * @author bvanchuhov
+ */
+public class MostRecentlyInsertedPublisher<E> implements Flow.Publisher<E> {
+
+    private final MostRecentlyInsertedBlockingQueue<E> queue;
+    private final Executor executor;
+
+    /**
+     * Creates a publisher, which delivers elements by tasks of {@link ForkJoinPool#commonPool()}.
+     */
+    public MostRecentlyInsertedPublisher(MostRecentlyInsertedBlockingQueue<E> queue) {
+        this(queue, ForkJoinPool.commonPool());
+    }
+
+    public MostRecentlyInsertedPublisher(MostRecentlyInsertedBlockingQueue<E> queue, Executor executor) {
+        if (queue == null || executor == null) {
+            throw new NullPointerException();
+        }
+        this.queue = queue;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super E> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        subscriber.onSubscribe(new QueueSubscription(subscriber));
+    }
+
+
+    /**
+     * Delivers elements by a drain loop, which is run by at most one executor task at a time.
+     */
+    private class QueueSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super E> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        /**
+         * Error of a not positive request, which is signalled by the drain loop,
+         * so that it isn't signalled concurrently with {@code onNext}.
+         */
+        private volatile Throwable pendingError;
+
+        /**
+         * Changed by the drain loop only.
+         */
+        private boolean errorSignalled;
+
+        /**
+         * Changed by the drain loop only.
+         */
+        private CompletableFuture<E> pendingTake;
+
+        QueueSubscription(Flow.Subscriber<? super E> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Cancels the subscription and signals {@link IllegalArgumentException} to the subscriber
+         * by the drain loop, if {@code n} is not positive and the subscription isn't cancelled yet.
+         */
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (!cancelled) {
+                    pendingError = new IllegalArgumentException("request should be greater than 0: " + n);
+                }
+                cancel();
+                return;
+            }
+            demand.getAndUpdate(d -> (d + n < 0) ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    if (releasePendingTake()) {
+                        signalPendingError();
+                    }
+                } else {
+                    deliver();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (!cancelled && demand.get() > 0) {
+                E e;
+                if (pendingTake != null) {
+                    if (!pendingTake.isDone()) {
+                        return;
+                    }
+                    e = pendingTake.join();
+                    pendingTake = null;
+                } else {
+                    e = queue.poll();
+                }
+
+                if (e == null) {
+                    pendingTake = queue.takeAsync();
+                    pendingTake.whenComplete((taken, ex) -> schedule());
+                    continue;
+                }
+
+                demand.decrementAndGet();
+                try {
+                    subscriber.onNext(e);
+                } catch (Throwable ex) {
+                    cancelled = true;
+                    subscriber.onError(ex);
+                }
+            }
+        }
+
+        private void signalPendingError() {
+            Throwable error = pendingError;
+            if (error != null && !errorSignalled) {
+                errorSignalled = true;
+                subscriber.onError(error);
+            }
+        }
+
+        /**
+         * Cancels the pending take. If it has been given an element already, the element is delivered
+         * rather than inserted into the queue again, since the take has been made for the outstanding demand,
+         * and a subscriber should be prepared to receive it after cancellation (rule 2.8).
+         *
+         * @return {@code false} if the take has been given an element, but isn't completed yet,
+         * then the drain loop is scheduled again on its completion.
+         */
+        private boolean releasePendingTake() {
+            if (pendingTake == null || pendingTake.cancel(false)) {
+                pendingTake = null;
+                return true;
+            }
+            if (!pendingTake.isDone()) {
+                return false;
+            }
+            E e = pendingTake.join();
+            pendingTake = null;
+            demand.decrementAndGet();
+            try {
+                subscriber.onNext(e);
+            } catch (Throwable ex) {
+                errorSignalled = true;
+                subscriber.onError(ex);
+            }
+            return true;
+        }
+    }
+}
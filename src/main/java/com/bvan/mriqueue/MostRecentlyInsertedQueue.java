@@ -2,18 +2,43 @@ package com.bvan.mriqueue;
 
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Not tread-safe implementation of MostRecentlyInsertedQueue.
+ * <p>
+ * Elements are kept in a preallocated ring of {@code capacity} slots,
+ * so eviction of the head overwrites its slot instead of allocating. {@link #setCapacity(int)} reallocates the ring.
+ * <p>
+ * With a max age, every element is stamped at insertion, and expired elements are dropped from the head
+ * by {@code offer}, {@code poll}, {@code peek}, {@code size} and iteration, which is O(expired) time.
  *
  * @author bvanchuhov
  */
 public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Queue<E> {
 
-    private final int capacity;
+    private int capacity;
+    private final EvictionListener<? super E> evictionListener;
 
-    private Node<E> beforeFirst;
-    private Node<E> last;
+    /**
+     * {@code 0} if elements don't expire.
+     */
+    private final long maxAgeMillis;
+    private final Ticker ticker;
+
+    /**
+     * {@code null} if metrics are disabled.
+     */
+    private final QueueMetrics metrics;
+
+    private Object[] items;
+
+    /**
+     * Insertion times of {@code items}, or {@code null} if elements don't expire.
+     */
+    private long[] stamps;
+    private int head;
     private int size;
 
     private int mod;
@@ -22,111 +47,406 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Qu
      * @throws IllegalArgumentException if {@code capacity} is not positive
      */
     public MostRecentlyInsertedQueue(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param evictionListener receives elements evicted from the head, when the queue is full, may be {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, 0, Ticker.SYSTEM, null);
+    }
+
+    /**
+     * @param evictionListener receives elements evicted from the head, when the queue is full, may be {@code null}.
+     * @param metrics          counts operations on the queue, may be {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public MostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener,
+                                     QueueMetrics metrics) {
+        this(capacity, evictionListener, 0, Ticker.SYSTEM, metrics);
+    }
+
+    /**
+     * @param maxAge time after insertion, when an element expires.
+     * @throws IllegalArgumentException if {@code capacity} or {@code maxAge} is not positive
+     */
+    public MostRecentlyInsertedQueue(int capacity, long maxAge, TimeUnit unit) {
+        this(capacity, maxAge, unit, null);
+    }
+
+    /**
+     * @param maxAge           time after insertion, when an element expires.
+     * @param evictionListener receives elements evicted from the head, when the queue is full,
+     *                         and expired elements, may be {@code null}.
+     * @throws IllegalArgumentException if {@code capacity} or {@code maxAge} is not positive
+     */
+    public MostRecentlyInsertedQueue(int capacity, long maxAge, TimeUnit unit,
+                                     EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, maxAgeMillis(maxAge, unit), Ticker.SYSTEM, null);
+    }
+
+    MostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener,
+                              long maxAgeMillis, Ticker ticker) {
+        this(capacity, evictionListener, maxAgeMillis, ticker, null);
+    }
+
+    MostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener,
+                              long maxAgeMillis, Ticker ticker, QueueMetrics metrics) {
         if (capacity <= 0) {
             throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
         }
         this.capacity = capacity;
-        beforeFirst = last = Node.emptyNode();
+        this.evictionListener = evictionListener;
+        this.maxAgeMillis = maxAgeMillis;
+        this.ticker = ticker;
+        this.metrics = metrics;
+        this.items = new Object[capacity];
+        this.stamps = (maxAgeMillis > 0) ? new long[capacity] : null;
     }
 
     @Override
     public int size() {
+        purgeExpired(now());
         return size;
     }
 
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Moves the elements to a ring of {@code capacity} slots by at most two array copies.
+     * If there are more elements than {@code capacity}, the surplus is evicted from the head first.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        purgeExpired(now());
+        while (size > capacity) {
+            onEviction(dequeue());
+        }
+        if (capacity == this.capacity) {
+            return;
+        }
+
+        Object[] newItems = new Object[capacity];
+        unwrap(items, newItems);
+        if (stamps != null) {
+            long[] newStamps = new long[capacity];
+            unwrap(stamps, newStamps);
+            stamps = newStamps;
+        }
+        items = newItems;
+        head = 0;
+        this.capacity = capacity;
+        mod++;
+    }
+
     @Override
     public boolean offer(E e) {
         if (e == null) {
             throw new NullPointerException();
         }
 
+        long now = now();
+        purgeExpired(now);
         if (size == capacity) {
-            enqueue(e);
-            dequeue();
+            E evicted = itemAt(head);
+            items[head] = e;
+            stamp(head, now);
+            head = inc(head);
+            mod++;
+            onEviction(evicted);
         } else {
-            enqueue(e);
+            enqueue(e, now);
+        }
+        if (metrics != null) {
+            metrics.recordOffers(1);
+            metrics.recordSize(size);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts {@code elems} at the tail in the order of the array, copying them into the ring.
+     * If there are more elements than {@code capacity}, the leading ones are skipped without being accessed.
+     *
+     * @return {@code true} if the queue changed.
+     * @throws NullPointerException if an inserted element is {@code null}, the queue isn't changed then
+     */
+    public boolean offerAll(E[] elems) {
+        int n = Math.min(elems.length, capacity);
+        int from = elems.length - n;
+        for (int i = from; i < elems.length; i++) {
+            if (elems[i] == null) {
+                throw new NullPointerException();
+            }
+        }
+        if (n == 0) {
+            return false;
+        }
+
+        long now = now();
+        purgeExpired(now);
+        if (evictionListener != null) {
+            for (int i = from; i < elems.length; i++) {
+                offer(elems[i]);
+            }
+            return true;
+        }
+
+        int evictedCount = Math.max(0, size + n - capacity);
+        int start = index(size);
+        int firstPart = Math.min(n, capacity - start);
+        System.arraycopy(elems, from, items, start, firstPart);
+        System.arraycopy(elems, from + firstPart, items, 0, n - firstPart);
+        if (stamps != null) {
+            Arrays.fill(stamps, start, start + firstPart, now);
+            Arrays.fill(stamps, 0, n - firstPart, now);
+        }
+
+        head = index(evictedCount);
+        size += n - evictedCount;
+        mod++;
+        if (metrics != null) {
+            metrics.recordOffers(n);
+            metrics.recordEvictions(evictedCount);
+            metrics.recordSize(size);
         }
         return true;
     }
 
+    /**
+     * Inserts elements of {@code c} at the tail in the iteration order.
+     *
+     * @return {@code true} if the queue changed.
+     * @throws NullPointerException if an inserted element is {@code null}, the queue isn't changed then
+     */
+    @SuppressWarnings("unchecked")
+    public boolean offerAll(Collection<? extends E> c) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        return offerAll((E[]) c.toArray());
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return offerAll(c);
+    }
+
+    /**
+     * @return element at position {@code indexFromHead} counting from the head, which is O(1) time.
+     * @throws IndexOutOfBoundsException if {@code indexFromHead} is not in {@code [0, size)}
+     */
+    public E get(int indexFromHead) {
+        purgeExpired(now());
+        checkIndex(indexFromHead);
+        return itemAt(index(indexFromHead));
+    }
+
+    /**
+     * @return element at position {@code k} counting from the tail, so {@code 0} is the most recent one,
+     * which is O(1) time.
+     * @throws IndexOutOfBoundsException if {@code k} is not in {@code [0, size)}
+     */
+    public E getFromTail(int k) {
+        purgeExpired(now());
+        checkIndex(k);
+        return itemAt(index(size - 1 - k));
+    }
+
+    /**
+     * Copies up to {@code k} most recent elements to the beginning of {@code dst} in the queue order,
+     * which is O(k) time.
+     *
+     * @return the number of copied elements, which is {@code min(k, size)}.
+     * @throws IllegalArgumentException if {@code k} is negative or greater than {@code dst.length}
+     */
+    public int lastK(int k, E[] dst) {
+        if (k < 0 || k > dst.length) {
+            throw new IllegalArgumentException("k should be in [0, dst.length]: " + k);
+        }
+        purgeExpired(now());
+        int n = Math.min(k, size);
+        int start = index(size - n);
+        int firstPart = Math.min(n, capacity - start);
+        System.arraycopy(items, start, dst, 0, firstPart);
+        System.arraycopy(items, 0, dst, firstPart, n - firstPart);
+        return n;
+    }
+
     @Override
     public E poll() {
-        return (!isEmpty()) ? dequeue() : null;
+        purgeExpired(now());
+        if (size == 0) {
+            return null;
+        }
+        if (metrics != null) {
+            metrics.recordPolls(1);
+        }
+        return dequeue();
     }
 
     @Override
     public E peek() {
-        return (!isEmpty()) ? firstNode().item : null;
+        purgeExpired(now());
+        return (size > 0) ? itemAt(head) : null;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0, index = head; i < size; i++, index = inc(index)) {
+            items[index] = null;
+        }
+        head = 0;
+        size = 0;
+        mod++;
     }
 
     @Override
     public Iterator<E> iterator() {
+        purgeExpired(now());
         return new QueueIterator();
     }
 
-    private Node<E> firstNode() {
-        return beforeFirst.next;
+    /**
+     * @return fail-fast {@link Spliterator#SIZED} and {@link Spliterator#SUBSIZED} spliterator,
+     * which splits the ring into contiguous ranges in O(1) time.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        purgeExpired(now());
+        return new QueueSpliterator(0, size, mod);
     }
 
-    private Node<E> beforeFirstNode() {
-        return beforeFirst;
+    private void onEviction(E evicted) {
+        if (metrics != null) {
+            metrics.recordEvictions(1);
+        }
+        if (evictionListener != null) {
+            evictionListener.onEviction(evicted);
+        }
     }
 
-    private E dequeue() {
-        return unlink(firstNode(), beforeFirstNode());
+    /**
+     * @return current time, or {@code 0} if elements don't expire.
+     */
+    private long now() {
+        return (stamps != null) ? ticker.millis() : 0;
+    }
+
+    /**
+     * Drops expired elements from the head.
+     * Stamps don't decrease from the head to the tail, so only the expired elements are looked through.
+     */
+    private void purgeExpired(long now) {
+        if (stamps == null) {
+            return;
+        }
+        while (size > 0 && now - stamps[head] >= maxAgeMillis) {
+            onEviction(dequeue());
+        }
+    }
+
+    private void stamp(int index, long now) {
+        if (stamps != null) {
+            stamps[index] = now;
+        }
     }
 
-    private void enqueue(E e) {
-        Node<E> node = new Node<>(e);
-        last.next = node;
-        last = node;
+    private void enqueue(E e, long now) {
+        int index = index(size);
+        items[index] = e;
+        stamp(index, now);
 
         size++;
         mod++;
     }
 
-    /**
-     * @param node {@code not null}.
-     * @param node {@code not null}.
-     */
-    private E unlink(Node<E> node, Node<E> prev) {
-        prev.next = node.next;
+    private E dequeue() {
+        E res = itemAt(head);
+        items[head] = null;
+        head = inc(head);
 
-        E res = node.item;
-        node.item = null;
-        node.next = null;
+        size--;
+        mod++;
 
-        if (last == node) {
-            last = prev;
+        return res;
+    }
+
+    /**
+     * Removes the element at position {@code i} (counting from the head)
+     * by shifting the following elements one slot towards the head.
+     */
+    private void removeAt(int i) {
+        int index = index(i);
+        for (int j = i + 1; j < size; j++) {
+            int nextIndex = inc(index);
+            items[index] = items[nextIndex];
+            if (stamps != null) {
+                stamps[index] = stamps[nextIndex];
+            }
+            index = nextIndex;
         }
+        items[index] = null;
 
         size--;
         mod++;
-
-        return res;
     }
 
-    private static class Node<E> {
-        E item;
-        Node<E> next;
+    /**
+     * Copies {@code size} slots from the head of the ring {@code src} to the beginning of {@code dst}.
+     */
+    private void unwrap(Object src, Object dst) {
+        int firstPart = Math.min(size, capacity - head);
+        System.arraycopy(src, head, dst, 0, firstPart);
+        System.arraycopy(src, 0, dst, firstPart, size - firstPart);
+    }
 
-        static <E> Node<E> emptyNode() {
-            return new Node<>(null);
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index: " + i + ", size: " + size);
         }
+    }
+
+    /**
+     * @return index of a slot, which is {@code i} positions after the head.
+     */
+    private int index(int i) {
+        int index = head + i;
+        return (index >= capacity) ? index - capacity : index;
+    }
 
-        Node(E item) {
-            this.item = item;
+    private int inc(int index) {
+        return (++index == capacity) ? 0 : index;
+    }
+
+    private static long maxAgeMillis(long maxAge, TimeUnit unit) {
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge should be greater than 0: " + maxAge);
         }
+        return Math.max(1, unit.toMillis(maxAge));
+    }
+
+    @SuppressWarnings("unchecked")
+    private E itemAt(int index) {
+        return (E) items[index];
     }
 
     private class QueueIterator implements Iterator<E> {
-        private Node<E> lastRet = null;
-        private Node<E> current = firstNode();
+        private int lastRet = -1;
+        private int cursor = 0;
         private int expectedMod = mod;
 
         @Override
         public boolean hasNext() {
-            return current != null;
+            return cursor < size;
         }
 
         /**
@@ -137,31 +457,95 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Qu
             if (mod != expectedMod) {
                 throw new ConcurrentModificationException();
             }
-            if (current == null) {
+            if (cursor >= size) {
                 throw new NoSuchElementException();
             }
-            E res = current.item;
-            lastRet = current;
-            current = current.next;
-            return res;
+            lastRet = cursor++;
+            return itemAt(index(lastRet));
         }
 
         @Override
         public void remove() {
-            if (lastRet == null) {
+            if (lastRet < 0) {
                 throw new IllegalStateException();
             }
-            Node<E> node = lastRet;
-            lastRet = null;
-            for (Node<E> prev = beforeFirstNode(), n = firstNode();
-                 n != null;
-                 prev = n, n = n.next) {
-                if (n == node) {
-                    unlink(n, prev);
-                    break;
-                }
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
             }
+            removeAt(lastRet);
+            cursor = lastRet;
+            lastRet = -1;
             expectedMod = mod;
         }
     }
+
+    private class QueueSpliterator implements Spliterator<E> {
+        private int cursor;
+        private final int fence;
+        private final int expectedMod;
+
+        QueueSpliterator(int cursor, int fence, int expectedMod) {
+            this.cursor = cursor;
+            this.fence = fence;
+            this.expectedMod = expectedMod;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the queue has been changed during traversal.
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+            if (cursor >= fence) {
+                return false;
+            }
+            action.accept(itemAt(index(cursor++)));
+            return true;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the queue has been changed during traversal.
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+            for (int index = index(cursor); cursor < fence; cursor++, index = inc(index)) {
+                action.accept(itemAt(index));
+            }
+            if (mod != expectedMod) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (cursor + fence) >>> 1;
+            if (mid <= cursor) {
+                return null;
+            }
+            QueueSpliterator prefix = new QueueSpliterator(cursor, mid, expectedMod);
+            cursor = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - cursor;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
 }
@@ -0,0 +1,38 @@
+package com.bvan.mriqueue;
+
+/**
+ * Lock-free multi-producer/single-consumer implementation of {@code MostRecentlyInsertedQueue}.
+ * <p>
+ * Producers claim sequences by an atomic increment of {@code tail}, so they never retry.
+ * A producer waits only for the previous producer of the same slot, which is a whole ring behind.
+ * The consumer waits for an element, which has been claimed, but isn't published yet.
+ * <p>
+ * {@link #poll()}, {@link #peek()} and {@link #clear()} should be called by the consumer thread only.
+ *
+ * @author bvanchuhov
+ */
+public class MpscMostRecentlyInsertedQueue<E> extends AbstractSequencedMostRecentlyInsertedQueue<E> {
+
+    /**
+     * @throws IllegalArgumentException if {@code capacity} is not positive or greater than 2^30
+     */
+    public MpscMostRecentlyInsertedQueue(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        long seq = tail.getAndIncrement();
+        long previous = previousInSlot(seq);
+        int index = index(seq);
+        while (stamps.get(index) < publishedStamp(previous)) {
+            Thread.yield();
+        }
+        write(seq, e, previous >= head.get());
+        return true;
+    }
+}
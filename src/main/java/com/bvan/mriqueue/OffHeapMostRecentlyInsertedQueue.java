@@ -0,0 +1,525 @@
+package com.bvan.mriqueue;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe implementation of {@code MostRecentlyInsertedQueue}, which keeps elements serialized
+ * by a {@link Codec} in a direct memory arena instead of the heap.
+ * <p>
+ * The queue is bounded both by {@code capacity} elements and by the size of the arena.
+ * Records are laid out in the arena one after another as {@code [int length][bytes]}, aligned to 4 bytes.
+ * If a record doesn't fit before the end of the arena, the rest of the arena is filled with padding
+ * and the record is written from the beginning. Whole records are evicted from the head
+ * until there is room for a new one.
+ *
+ * @author bvanchuhov
+ */
+public class OffHeapMostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    private static final int HEADER_BYTES = 4;
+    private static final int MAX_ARENA_BYTES = Integer.MAX_VALUE & ~(HEADER_BYTES - 1);
+
+    /**
+     * Header of the padding, which fills the arena from the last record up to the end.
+     */
+    private static final int PADDING = -1;
+
+    private final int capacity;
+    private final Codec<E> codec;
+
+    private final ByteBuffer arena;
+    private final int arenaBytes;
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private final ByteBuffer writeView;
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private final ByteBuffer readView;
+
+    /**
+     * Offset of the head record. Written under {@code takeLock}.
+     */
+    private volatile int head;
+
+    /**
+     * Sequence of the head record. Guarded by {@code takeLock}.
+     */
+    private long headSeq;
+
+    /**
+     * Offset next to the tail record. Guarded by {@code putLock}.
+     */
+    private int tail;
+
+    /**
+     * Sequence next to the tail record. Guarded by {@code putLock}.
+     */
+    private long tailSeq;
+
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    /**
+     * Bytes between {@code head} and {@code tail}, including padding and removed records.
+     */
+    private final AtomicInteger usedBytes = new AtomicInteger(0);
+
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    /**
+     * @param arenaBytes size of the direct memory arena, rounded up to a multiple of 4.
+     * @throws IllegalArgumentException if {@code capacity} or {@code arenaBytes} is not positive
+     */
+    public OffHeapMostRecentlyInsertedQueue(int capacity, int arenaBytes, Codec<E> codec) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (arenaBytes <= 0 || arenaBytes > MAX_ARENA_BYTES) {
+            throw new IllegalArgumentException("arenaBytes should be in range (0, " + MAX_ARENA_BYTES + "]: " + arenaBytes);
+        }
+        this.capacity = capacity;
+        this.codec = Objects.requireNonNull(codec);
+
+        this.arenaBytes = align(arenaBytes);
+        this.arena = ByteBuffer.allocateDirect(this.arenaBytes);
+        this.writeView = arena.duplicate();
+        this.readView = arena.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the encoded element doesn't fit into the arena
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        int length = codec.encodedLength(e);
+        int recordBytes = recordBytes(length);
+        if (length < 0 || recordBytes > arenaBytes) {
+            throw new IllegalArgumentException("encoded element doesn't fit into the arena: " + length + " bytes");
+        }
+
+        putLock.lock();
+        try {
+            int offset = writeOffset(recordBytes);
+            if (offset < 0 || size() == capacity) {
+                offset = lockedMakeRoom(recordBytes);
+            }
+            enqueue(e, length, offset);
+        } finally {
+            putLock.unlock();
+        }
+
+        return true;
+    }
+
+    private int lockedMakeRoom(int recordBytes) {
+        takeLock.lock();
+        try {
+            int offset;
+            while (true) {
+                if (usedBytes.get() == 0) {
+                    head = tail = 0;
+                }
+                offset = writeOffset(recordBytes);
+                if (offset >= 0 && size() < capacity) {
+                    return offset;
+                }
+                dropHead();
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            if (isEmpty()) {
+                return null;
+            }
+            int offset = liveHead();
+            E res = decode(offset);
+            dropHead();
+            return res;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            return (!isEmpty()) ? decode(liveHead()) : null;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * Passes raw bytes of the head record to {@code action} and removes the record, if {@code action} completes normally.
+     * The bytes are between the position and the limit of the buffer, which is read-only and valid only during the call.
+     *
+     * @return {@code false} if the queue is empty.
+     */
+    public boolean pollRaw(Consumer<? super ByteBuffer> action) {
+        return readRaw(action, true);
+    }
+
+    /**
+     * Passes raw bytes of the head record to {@code action} without removing the record.
+     * The bytes are between the position and the limit of the buffer, which is read-only and valid only during the call.
+     *
+     * @return {@code false} if the queue is empty.
+     */
+    public boolean peekRaw(Consumer<? super ByteBuffer> action) {
+        return readRaw(action, false);
+    }
+
+    private boolean readRaw(Consumer<? super ByteBuffer> action, boolean remove) {
+        Objects.requireNonNull(action);
+        if (isEmpty()) {
+            return false;
+        }
+
+        takeLock.lock();
+        try {
+            if (isEmpty()) {
+                return false;
+            }
+            action.accept(view(liveHead()));
+            if (remove) {
+                dropHead();
+            }
+            return true;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+
+        fullyLock();
+        try {
+            int offset = indexOf(obj);
+            if (offset < 0) {
+                return false;
+            }
+            markRemoved(offset);
+            return true;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        if (obj == null || isEmpty()) {
+            return false;
+        }
+
+        fullyLock();
+        try {
+            return indexOf(obj) >= 0;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fullyLock();
+        try {
+            head = tail = 0;
+            headSeq = tailSeq;
+            usedBytes.set(0);
+            count.set(0);
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * Returns <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator, which decodes elements one by one.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator();
+    }
+
+
+    /**
+     * Guarded by {@code putLock}.
+     *
+     * @return offset, where a record of {@code recordBytes} fits, or {@code -1}.
+     */
+    private int writeOffset(int recordBytes) {
+        int used = usedBytes.get();
+        int h = head;
+        if (used == 0 || tail > h) {
+            if (tail + recordBytes <= arenaBytes) {
+                return tail;
+            }
+            int freeAtStart = (used == 0) ? tail : h;
+            return (recordBytes <= freeAtStart) ? 0 : -1;
+        }
+        return (tail + recordBytes <= h) ? tail : -1;
+    }
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private void enqueue(E e, int length, int offset) {
+        int paddingBytes = 0;
+        if (offset != tail) {
+            arena.putInt(tail, PADDING);
+            paddingBytes = arenaBytes - tail;
+        }
+
+        int start = offset + HEADER_BYTES;
+        writeView.limit(start + length);
+        writeView.position(start);
+        codec.encode(e, writeView);
+        if (writeView.position() != start + length) {
+            throw new IllegalStateException("codec wrote " + (writeView.position() - start)
+                    + " bytes instead of " + length);
+        }
+        arena.putInt(offset, length);
+
+        int recordBytes = recordBytes(length);
+        tail = wrap(offset + recordBytes);
+        tailSeq++;
+
+        usedBytes.addAndGet(paddingBytes + recordBytes);
+        count.incrementAndGet();
+    }
+
+    /**
+     * Drops padding and removed records at the head. Guarded by {@code takeLock}.
+     * The queue should not be empty.
+     *
+     * @return offset of the head record.
+     */
+    private int liveHead() {
+        while (arena.getInt(head) < 0) {
+            dropHead();
+        }
+        return head;
+    }
+
+    /**
+     * Drops the padding or the record at the head. Guarded by {@code takeLock}.
+     */
+    private void dropHead() {
+        int h = head;
+        int header = arena.getInt(h);
+        if (header == PADDING) {
+            head = 0;
+            usedBytes.addAndGet(-(arenaBytes - h));
+            return;
+        }
+
+        int recordBytes = recordBytes(length(header));
+        head = wrap(h + recordBytes);
+        headSeq++;
+        usedBytes.addAndGet(-recordBytes);
+        if (header >= 0) {
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Guarded by {@code putLock} and {@code takeLock}.
+     *
+     * @return offset of the first live record equal to {@code obj}, or {@code -1}.
+     */
+    private int indexOf(Object obj) {
+        int offset = head;
+        for (long seq = headSeq; seq < tailSeq; ) {
+            int header = arena.getInt(offset);
+            if (header == PADDING) {
+                offset = 0;
+                continue;
+            }
+            if (header >= 0 && obj.equals(decode(offset))) {
+                return offset;
+            }
+            offset = wrap(offset + recordBytes(length(header)));
+            seq++;
+        }
+        return -1;
+    }
+
+    /**
+     * Guarded by {@code putLock} and {@code takeLock}.
+     */
+    private void markRemoved(int offset) {
+        arena.putInt(offset, -arena.getInt(offset) - 2);
+        count.decrementAndGet();
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private E decode(int offset) {
+        return codec.decode(view(offset));
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private ByteBuffer view(int offset) {
+        int start = offset + HEADER_BYTES;
+        readView.limit(start + arena.getInt(offset));
+        readView.position(start);
+        return readView;
+    }
+
+    private int wrap(int offset) {
+        return (offset == arenaBytes) ? 0 : offset;
+    }
+
+    /**
+     * @return length of a live or a removed record by its {@code header}.
+     */
+    private static int length(int header) {
+        return (header >= 0) ? header : -header - 2;
+    }
+
+    private static int recordBytes(int length) {
+        return HEADER_BYTES + align(length);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + HEADER_BYTES - 1) & ~(HEADER_BYTES - 1);
+    }
+
+    private void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    private void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+
+
+    private class QueueIterator implements Iterator<E> {
+
+        private long cursorSeq;
+        private int cursorOffset;
+
+        private long nextSeq;
+        private int nextOffset;
+        private E nextItem;
+
+        private long lastRetSeq = -1;
+        private int lastRetOffset;
+
+        public QueueIterator() {
+            fullyLock();
+            try {
+                advance();
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        @Override
+        public E next() {
+            fullyLock();
+            try {
+                if (nextItem == null) {
+                    throw new NoSuchElementException();
+                }
+                E res = nextItem;
+                lastRetSeq = nextSeq;
+                lastRetOffset = nextOffset;
+                advance();
+                return res;
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        /**
+         * Guarded by {@code putLock} and {@code takeLock}.
+         */
+        private void advance() {
+            if (cursorSeq <= headSeq) {
+                cursorSeq = headSeq;
+                cursorOffset = head;
+            }
+
+            nextItem = null;
+            while (cursorSeq < tailSeq && nextItem == null) {
+                int header = arena.getInt(cursorOffset);
+                if (header == PADDING) {
+                    cursorOffset = 0;
+                    continue;
+                }
+                if (header >= 0) {
+                    nextSeq = cursorSeq;
+                    nextOffset = cursorOffset;
+                    nextItem = decode(cursorOffset);
+                }
+                cursorOffset = wrap(cursorOffset + recordBytes(length(header)));
+                cursorSeq++;
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (lastRetSeq < 0) {
+                throw new IllegalStateException();
+            }
+
+            fullyLock();
+            try {
+                if (lastRetSeq >= headSeq && arena.getInt(lastRetOffset) >= 0) {
+                    markRemoved(lastRetOffset);
+                }
+                lastRetSeq = -1;
+            } finally {
+                fullyUnlock();
+            }
+        }
+    }
+}
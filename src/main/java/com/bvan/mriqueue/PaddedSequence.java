@@ -0,0 +1,51 @@
+package com.bvan.mriqueue;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Left padding of {@link PaddedSequence}.
+ */
+abstract class PaddedSequenceLeftPad {
+    long p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * Hot fields of {@link PaddedSequence}, which are placed by the class hierarchy
+ * between two cache lines of padding, since field order within a class isn't guaranteed.
+ */
+abstract class PaddedSequenceFields extends PaddedSequenceLeftPad {
+    volatile long value;
+
+    /**
+     * Plain field for the owner thread, e.g. to cache the last read value of another sequence.
+     */
+    long cache;
+}
+
+/**
+ * Sequence counter, which doesn't share a cache line with other hot fields.
+ *
+ * @author bvanchuhov
+ */
+final class PaddedSequence extends PaddedSequenceFields {
+
+    private static final AtomicLongFieldUpdater<PaddedSequenceFields> VALUE =
+            AtomicLongFieldUpdater.newUpdater(PaddedSequenceFields.class, "value");
+
+    long p11, p12, p13, p14, p15, p16, p17;
+
+    long get() {
+        return value;
+    }
+
+    /**
+     * Ordered store, which isn't reordered with the preceding stores, but doesn't wait for them to be flushed.
+     */
+    void lazySet(long newValue) {
+        VALUE.lazySet(this, newValue);
+    }
+
+    long getAndIncrement() {
+        return VALUE.getAndIncrement(this);
+    }
+}
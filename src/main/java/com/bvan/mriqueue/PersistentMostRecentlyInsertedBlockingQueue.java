@@ -0,0 +1,843 @@
+package com.bvan.mriqueue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe blocking implementation of {@code MostRecentlyInsertedQueue}, which keeps its ring
+ * in a memory-mapped file, so the contents survive restarts.
+ * <p>
+ * The file starts with a header, which holds the capacity, the slot size and sequences of the head and the tail.
+ * It's followed by {@code capacity} slots of fixed size, each of which holds a record encoded by a {@link Codec}.
+ * Reopening of the file reads the header only.
+ * <p>
+ * The file is locked while the queue is open, so it can't be shared by two queues, either in one process or in several.
+ * After {@link #close()} every operation, except {@code size}, throws {@link IllegalStateException}.
+ * <p>
+ * When the mapped pages are forced to the storage is defined by {@link Durability}.
+ *
+ * @author bvanchuhov
+ */
+public class PersistentMostRecentlyInsertedBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, Closeable {
+
+    private static final int MAGIC = 0x4D524951;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SLOT_BYTES_OFFSET = 12;
+    private static final int HEAD_OFFSET = 16;
+    private static final int TAIL_OFFSET = 24;
+    private static final int HEADER_BYTES = 64;
+
+    private static final int LENGTH_BYTES = 4;
+
+    private final int capacity;
+    private final int slotBytes;
+    private final Codec<E> codec;
+    private final Durability durability;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private final ByteBuffer writeView;
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private final ByteBuffer readView;
+
+    /**
+     * Sequence of the head element. Guarded by {@code takeLock}.
+     */
+    private long head;
+
+    /**
+     * Sequence next to the tail element. Guarded by {@code putLock}.
+     */
+    private long tail;
+
+    private final AtomicInteger count;
+
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final Condition notEmptyCondition = takeLock.newCondition();
+
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    private volatile long lastForceNanos = System.nanoTime();
+
+    /**
+     * Written under {@code putLock} and {@code takeLock}.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Opens the queue stored in {@code file} or creates the file, if it doesn't exist.
+     *
+     * @param maxRecordBytes max length of an encoded element.
+     * @throws IllegalArgumentException if {@code capacity} or {@code maxRecordBytes} is not positive,
+     *                                  or the file is too large to be mapped
+     * @throws IOException              if the file can't be mapped, it's locked by another queue,
+     *                                  or it was created with another capacity or slot size
+     */
+    public PersistentMostRecentlyInsertedBlockingQueue(Path file, int capacity, int maxRecordBytes,
+                                                       Codec<E> codec, Durability durability) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (maxRecordBytes <= 0) {
+            throw new IllegalArgumentException("maxRecordBytes should be greater than 0: " + maxRecordBytes);
+        }
+        long slotBytes = align((long) LENGTH_BYTES + maxRecordBytes);
+        long fileBytes = HEADER_BYTES + capacity * slotBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("file is too large to be mapped: " + fileBytes + " bytes");
+        }
+        this.capacity = capacity;
+        this.slotBytes = (int) slotBytes;
+        this.codec = Objects.requireNonNull(codec);
+        this.durability = Objects.requireNonNull(durability);
+
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock(file);
+            boolean created = channel.size() == 0;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+            if (created) {
+                writeHeader();
+            } else {
+                readHeader(file);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.writeView = buffer.duplicate();
+        this.readView = buffer.asReadOnlyBuffer();
+        this.count = new AtomicInteger((int) (tail - head));
+    }
+
+    /**
+     * The lock is released by closing of the channel.
+     */
+    private void lock(Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException("queue file " + file + " is locked by another queue");
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SLOT_BYTES_OFFSET, slotBytes);
+        buffer.putLong(HEAD_OFFSET, 0);
+        buffer.putLong(TAIL_OFFSET, 0);
+        buffer.force();
+    }
+
+    private void readHeader(Path file) throws IOException {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("not a queue file: " + file);
+        }
+        if (buffer.getInt(CAPACITY_OFFSET) != capacity || buffer.getInt(SLOT_BYTES_OFFSET) != slotBytes) {
+            throw new IOException("queue file " + file + " was created with capacity " + buffer.getInt(CAPACITY_OFFSET)
+                    + " and slot of " + buffer.getInt(SLOT_BYTES_OFFSET) + " bytes");
+        }
+        head = buffer.getLong(HEAD_OFFSET);
+        tail = buffer.getLong(TAIL_OFFSET);
+        if (head < 0 || tail < head || tail - head > capacity) {
+            throw new IOException("queue file " + file + " is corrupted: head " + head + ", tail " + tail);
+        }
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the encoded element is longer than {@code maxRecordBytes}
+     */
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        putLock.lockInterruptibly();
+        try {
+            ensureOpen();
+            if (size() == capacity) {
+                interruptiblyLockedEnqueue(e);
+            } else {
+                enqueue(e);
+                notEmptySignal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        afterBatch();
+    }
+
+    private void interruptiblyLockedEnqueue(E e) throws InterruptedException {
+        takeLock.lockInterruptibly();
+        try {
+            evictingEnqueue(e);
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the encoded element is longer than {@code maxRecordBytes}
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        put(e);
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the encoded element is longer than {@code maxRecordBytes}
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        putLock.lock();
+        try {
+            ensureOpen();
+            if (size() == capacity) {
+                lockedEnqueue(e);
+            } else {
+                enqueue(e);
+                notEmptySignal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        afterBatch();
+
+        return true;
+    }
+
+    /**
+     * Inserts elements of {@code c} at the tail in the iteration order, taking {@code putLock} once,
+     * and forces the contents once, if durability is {@link Durability#perBatch()}.
+     * If there are more elements than {@code capacity}, the leading ones are skipped without being inserted.
+     *
+     * @return {@code true} if the queue changed.
+     * @throws NullPointerException     if an inserted element is {@code null}, the queue isn't changed then
+     * @throws IllegalArgumentException if an encoded element is longer than {@code maxRecordBytes},
+     *                                  the queue isn't changed then
+     */
+    public boolean offerAll(Collection<? extends E> c) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+
+        Iterator<? extends E> iterator = c.iterator();
+        for (int skip = c.size() - capacity; skip > 0 && iterator.hasNext(); skip--) {
+            iterator.next();
+        }
+        List<E> elems = new ArrayList<>(Math.min(c.size(), capacity));
+        while (iterator.hasNext()) {
+            E e = iterator.next();
+            if (e == null) {
+                throw new NullPointerException();
+            }
+            encodedLength(e);
+            elems.add(e);
+        }
+        if (elems.isEmpty()) {
+            return false;
+        }
+
+        putLock.lock();
+        try {
+            ensureOpen();
+            if (size() + elems.size() > capacity) {
+                lockedEnqueueAll(elems);
+            } else {
+                for (E e : elems) {
+                    enqueue(e);
+                }
+                notEmptySignalAll();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        afterBatch();
+
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return offerAll(c);
+    }
+
+    private void lockedEnqueueAll(List<E> elems) {
+        takeLock.lock();
+        try {
+            for (E e : elems) {
+                evictingEnqueue(e);
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void lockedEnqueue(E e) {
+        takeLock.lock();
+        try {
+            evictingEnqueue(e);
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E res;
+
+        takeLock.lockInterruptibly();
+        try {
+            ensureOpen();
+            while (isEmpty()) {
+                notEmptyCondition.await();
+                ensureOpen();
+            }
+            res = dequeue();
+        } finally {
+            takeLock.unlock();
+        }
+        afterBatch();
+
+        return res;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E res;
+
+        long nanos = unit.toNanos(timeout);
+        takeLock.lockInterruptibly();
+        try {
+            ensureOpen();
+            while (isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmptyCondition.awaitNanos(nanos);
+                ensureOpen();
+            }
+            res = dequeue();
+        } finally {
+            takeLock.unlock();
+        }
+        afterBatch();
+
+        return res;
+    }
+
+    @Override
+    public E poll() {
+        ensureOpen();
+        if (isEmpty()) {
+            return null;
+        }
+
+        E res;
+        takeLock.lock();
+        try {
+            ensureOpen();
+            if (isEmpty()) {
+                return null;
+            }
+            res = dequeue();
+        } finally {
+            takeLock.unlock();
+        }
+        afterBatch();
+
+        return res;
+    }
+
+    @Override
+    public E peek() {
+        ensureOpen();
+        if (isEmpty()) {
+            return null;
+        }
+
+        takeLock.lock();
+        try {
+            ensureOpen();
+            return (!isEmpty()) ? decode(head) : null;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+
+        fullyLock();
+        try {
+            ensureOpen();
+            for (long seq = head; seq < tail; seq++) {
+                if (obj.equals(decode(seq))) {
+                    removeAt(seq);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+            afterBatch();
+        }
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        ensureOpen();
+        if (obj == null || isEmpty()) {
+            return false;
+        }
+
+        fullyLock();
+        try {
+            ensureOpen();
+            for (long seq = head; seq < tail; seq++) {
+                if (obj.equals(decode(seq))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fullyLock();
+        try {
+            ensureOpen();
+            head = tail;
+            buffer.putLong(HEAD_OFFSET, head);
+            count.set(0);
+        } finally {
+            fullyUnlock();
+        }
+        afterBatch();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+
+        int i = 0;
+        takeLock.lock();
+        try {
+            ensureOpen();
+            int n = Math.min(maxElements, size());
+            while (i < n) {
+                c.add(decode(head));
+                head++;
+                i++;
+            }
+            return n;
+        } finally {
+            if (i > 0) {
+                buffer.putLong(HEAD_OFFSET, head);
+                count.getAndAdd(-i);
+            }
+            takeLock.unlock();
+            afterBatch();
+        }
+    }
+
+    /**
+     * Returns <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator, which decodes elements one by one.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator();
+    }
+
+    /**
+     * Forces the mapped contents to the storage regardless of {@link Durability}.
+     */
+    public void force() {
+        ensureOpen();
+        forceContents();
+    }
+
+    /**
+     * Forces the contents, unless durability is {@link Durability#none()}, and closes the file, releasing its lock.
+     * Threads waiting in {@code take} or {@code poll} are woken up and throw {@link IllegalStateException}.
+     * Closing of the closed queue has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        fullyLock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmptyCondition.signalAll();
+            if (durability.mode != Durability.Mode.NONE) {
+                forceContents();
+            }
+            channel.close();
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private void enqueue(E e) {
+        write(tail, e);
+        tail++;
+        buffer.putLong(TAIL_OFFSET, tail);
+
+        count.incrementAndGet();
+    }
+
+    /**
+     * Overwrites the head of the full queue. Guarded by {@code putLock} and {@code takeLock}.
+     * The head is advanced first, so a crash in the middle loses only the evicted element.
+     */
+    private void evictingEnqueue(E e) {
+        if (size() < capacity) {
+            enqueue(e);
+            notEmptyCondition.signal();
+            return;
+        }
+
+        int length = encodedLength(e);
+        head++;
+        buffer.putLong(HEAD_OFFSET, head);
+        write(tail, e, length);
+        tail++;
+        buffer.putLong(TAIL_OFFSET, tail);
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private E dequeue() {
+        E res = decode(head);
+        head++;
+        buffer.putLong(HEAD_OFFSET, head);
+
+        count.decrementAndGet();
+
+        return res;
+    }
+
+    /**
+     * Removes the element with sequence {@code seq} by shifting the following elements one slot towards the head.
+     * Guarded by {@code putLock} and {@code takeLock}.
+     */
+    private void removeAt(long seq) {
+        for (long s = seq + 1; s < tail; s++) {
+            int from = offset(s);
+            readView.limit(from + LENGTH_BYTES + buffer.getInt(from));
+            readView.position(from);
+            writeView.limit(writeView.capacity());
+            writeView.position(offset(s - 1));
+            writeView.put(readView);
+        }
+        tail--;
+        buffer.putLong(TAIL_OFFSET, tail);
+
+        count.decrementAndGet();
+    }
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private void write(long seq, E e) {
+        write(seq, e, encodedLength(e));
+    }
+
+    /**
+     * Guarded by {@code putLock}.
+     */
+    private void write(long seq, E e, int length) {
+        int offset = offset(seq);
+        int start = offset + LENGTH_BYTES;
+        writeView.limit(start + length);
+        writeView.position(start);
+        codec.encode(e, writeView);
+        if (writeView.position() != start + length) {
+            throw new IllegalStateException("codec wrote " + (writeView.position() - start)
+                    + " bytes instead of " + length);
+        }
+        buffer.putInt(offset, length);
+    }
+
+    private int encodedLength(E e) {
+        int length = codec.encodedLength(e);
+        if (length < 0 || length > slotBytes - LENGTH_BYTES) {
+            throw new IllegalArgumentException("encoded element doesn't fit into a slot: " + length + " bytes");
+        }
+        return length;
+    }
+
+    /**
+     * Guarded by {@code takeLock}.
+     */
+    private E decode(long seq) {
+        int offset = offset(seq);
+        int start = offset + LENGTH_BYTES;
+        readView.limit(start + buffer.getInt(offset));
+        readView.position(start);
+        return codec.decode(readView);
+    }
+
+    private int offset(long seq) {
+        return HEADER_BYTES + (int) (seq % capacity) * slotBytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + LENGTH_BYTES - 1) & ~(LENGTH_BYTES - 1);
+    }
+
+    private void afterBatch() {
+        if (closed) {
+            return;
+        }
+        if (durability.mode == Durability.Mode.PER_BATCH
+                || (durability.mode == Durability.Mode.PERIODIC
+                    && System.nanoTime() - lastForceNanos >= durability.intervalNanos)) {
+            forceContents();
+        }
+    }
+
+    private void forceContents() {
+        lastForceNanos = System.nanoTime();
+        buffer.force();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("queue is closed");
+        }
+    }
+
+    private void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    private void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+
+    private void notEmptySignal() {
+        takeLock.lock();
+        try {
+            notEmptyCondition.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void notEmptySignalAll() {
+        takeLock.lock();
+        try {
+            notEmptyCondition.signalAll();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Defines when mapped contents of the queue are forced to the storage.
+     * Without forcing, the contents survive a crash of the process, but not of the operating system.
+     */
+    public static final class Durability {
+
+        enum Mode {
+            NONE, PERIODIC, PER_BATCH
+        }
+
+        private static final Durability NONE = new Durability(Mode.NONE, 0);
+        private static final Durability PER_BATCH = new Durability(Mode.PER_BATCH, 0);
+
+        final Mode mode;
+        final long intervalNanos;
+
+        private Durability(Mode mode, long intervalNanos) {
+            this.mode = mode;
+            this.intervalNanos = intervalNanos;
+        }
+
+        /**
+         * Contents are never forced explicitly.
+         */
+        public static Durability none() {
+            return NONE;
+        }
+
+        /**
+         * Contents are forced by the first operation, which modifies the queue after {@code interval} since the last force.
+         *
+         * @throws IllegalArgumentException if {@code interval} is negative
+         */
+        public static Durability periodic(long interval, TimeUnit unit) {
+            if (interval < 0) {
+                throw new IllegalArgumentException("interval should not be negative: " + interval);
+            }
+            return new Durability(Mode.PERIODIC, unit.toNanos(interval));
+        }
+
+        /**
+         * Contents are forced before every operation, which modifies the queue, returns.
+         * A batch operation, like {@code offerAll}, {@code addAll} or {@code drainTo}, forces them once for all elements.
+         */
+        public static Durability perBatch() {
+            return PER_BATCH;
+        }
+    }
+
+    /**
+     * <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>Weakly consistent</i>
+     * </a> iterator.
+     */
+    private class QueueIterator implements Iterator<E> {
+
+        private long lastRet = -1;
+        private long cursor;
+        private E nextItem;
+
+        public QueueIterator() {
+            fullyLock();
+            try {
+                ensureOpen();
+                cursor = head;
+                advance();
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        @Override
+        public E next() {
+            fullyLock();
+            try {
+                ensureOpen();
+                if (nextItem == null) {
+                    throw new NoSuchElementException();
+                }
+                E res = nextItem;
+                lastRet = cursor;
+                cursor++;
+                advance();
+                return res;
+            } finally {
+                fullyUnlock();
+            }
+        }
+
+        /**
+         * Guarded by {@code putLock} and {@code takeLock}.
+         */
+        private void advance() {
+            cursor = Math.max(cursor, head);
+            nextItem = (cursor < tail) ? decode(cursor) : null;
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+
+            fullyLock();
+            try {
+                ensureOpen();
+                long seq = lastRet;
+                lastRet = -1;
+                if (seq >= head && seq < tail) {
+                    removeAt(seq);
+                    cursor--;
+                    advance();
+                }
+            } finally {
+                fullyUnlock();
+            }
+            afterBatch();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bvan.mriqueue;
+
+/**
+ * Events of one queue, which are reported to JDK Flight Recorder by {@link JfrQueueEvents}.
+ * <p>
+ * This class doesn't refer to {@code jdk.jfr}, so a queue can be created on a runtime without that module,
+ * where the events are disabled: waits return {@code null} and nothing is recorded.
+ *
+ * @author bvanchuhov
+ */
+class QueueEvents {
+
+    private static final QueueEvents DISABLED = new QueueEvents();
+
+    QueueEvents() {
+    }
+
+    /**
+     * @return {@link JfrQueueEvents} of {@code queue}, or disabled events, if the {@code jdk.jfr} module is absent.
+     */
+    static QueueEvents of(Object queue) {
+        return JfrSupport.AVAILABLE ? JfrQueueEvents.of(queue) : DISABLED;
+    }
+
+    /**
+     * @return the wait, which is passed to {@link #commitLockWait(Object, String)}.
+     */
+    Object beginLockWait() {
+        return null;
+    }
+
+    void commitLockWait(Object lockWait, String lock) {
+    }
+
+    /**
+     * @return the wait, which is passed to {@link #commitBlockedTake(Object, String)}.
+     */
+    Object beginBlockedTake() {
+        return null;
+    }
+
+    void commitBlockedTake(Object blockedTake, String operation) {
+    }
+
+    void evicted(int n) {
+    }
+
+    /**
+     * Checks the module on the first access, so that {@link JfrQueueEvents} is linked only when it can be.
+     */
+    private static final class JfrSupport {
+
+        static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+    }
+}
@@ -0,0 +1,196 @@
+package com.bvan.mriqueue;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a queue, which are passed to its constructor. Queues without them don't count anything.
+ * <p>
+ * Counters are striped {@link LongAdder}s, so producers and consumers don't write a shared cache line
+ * to update them. Waiting for a lock is timed only when the lock is contended, so uncontended operations
+ * don't read the clock. Elements, which are inserted and removed by several threads, may be counted
+ * by {@link #snapshot()} in a different order than they have been inserted and removed.
+ * <p>
+ * Expired elements are counted as evicted. Elements removed by {@code remove}, {@code clear} or iterators
+ * aren't counted, and neither are the leading elements, which {@code offerAll} skips.
+ *
+ * @author bvanchuhov
+ */
+public final class QueueMetrics implements QueueMetricsMXBean {
+
+    private final LongAdder offers = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAccumulator peakSize = new LongAccumulator(Math::max, 0);
+    private final LongAdder putLockWaitNanos = new LongAdder();
+    private final LongAdder takeLockWaitNanos = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+
+    @Override
+    public long getOfferCount() {
+        return offers.sum();
+    }
+
+    @Override
+    public long getPollCount() {
+        return polls.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getPeakSize() {
+        return peakSize.get();
+    }
+
+    @Override
+    public long getPutLockWaitNanos() {
+        return putLockWaitNanos.sum();
+    }
+
+    @Override
+    public long getTakeLockWaitNanos() {
+        return takeLockWaitNanos.sum();
+    }
+
+    @Override
+    public long getTakeBlockedNanos() {
+        return takeBlockedNanos.sum();
+    }
+
+    /**
+     * Resets counters to zero. Updates, which happen concurrently, may be lost.
+     */
+    @Override
+    public void reset() {
+        offers.reset();
+        polls.reset();
+        evictions.reset();
+        peakSize.reset();
+        putLockWaitNanos.reset();
+        takeLockWaitNanos.reset();
+        takeBlockedNanos.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Registers the counters in the platform MBean server as
+     * {@code com.bvan.mriqueue:type=QueueMetrics,name=<name>}.
+     *
+     * @return name of the registered MBean, which is passed to {@link #unregister(ObjectName)}.
+     * @throws JMException if there is an MBean with the same name
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.bvan.mriqueue:type=QueueMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+
+    void recordOffers(int n) {
+        offers.add(n);
+    }
+
+    void recordPolls(int n) {
+        polls.add(n);
+    }
+
+    void recordEvictions(int n) {
+        evictions.add(n);
+    }
+
+    void recordSize(int size) {
+        peakSize.accumulate(size);
+    }
+
+    void recordTakeBlocked(long nanos) {
+        takeBlockedNanos.add(nanos);
+    }
+
+    void recordPutLockWait(long nanos) {
+        putLockWaitNanos.add(nanos);
+    }
+
+    void recordTakeLockWait(long nanos) {
+        takeLockWaitNanos.add(nanos);
+    }
+
+
+    /**
+     * Counters, which have been read one by one, so they may be not consistent with each other
+     * while the queue is being changed.
+     */
+    public static final class Snapshot {
+        private final long offerCount;
+        private final long pollCount;
+        private final long evictionCount;
+        private final long peakSize;
+        private final long putLockWaitNanos;
+        private final long takeLockWaitNanos;
+        private final long takeBlockedNanos;
+
+        private Snapshot(QueueMetrics metrics) {
+            this.offerCount = metrics.getOfferCount();
+            this.pollCount = metrics.getPollCount();
+            this.evictionCount = metrics.getEvictionCount();
+            this.peakSize = metrics.getPeakSize();
+            this.putLockWaitNanos = metrics.getPutLockWaitNanos();
+            this.takeLockWaitNanos = metrics.getTakeLockWaitNanos();
+            this.takeBlockedNanos = metrics.getTakeBlockedNanos();
+        }
+
+        public long offerCount() {
+            return offerCount;
+        }
+
+        public long pollCount() {
+            return pollCount;
+        }
+
+        public long evictionCount() {
+            return evictionCount;
+        }
+
+        public long peakSize() {
+            return peakSize;
+        }
+
+        public long putLockWaitNanos() {
+            return putLockWaitNanos;
+        }
+
+        public long takeLockWaitNanos() {
+            return takeLockWaitNanos;
+        }
+
+        public long takeBlockedNanos() {
+            return takeBlockedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "QueueMetrics.Snapshot{" +
+                    "offerCount=" + offerCount +
+                    ", pollCount=" + pollCount +
+                    ", evictionCount=" + evictionCount +
+                    ", peakSize=" + peakSize +
+                    ", putLockWaitNanos=" + putLockWaitNanos +
+                    ", takeLockWaitNanos=" + takeLockWaitNanos +
+                    ", takeBlockedNanos=" + takeBlockedNanos +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.bvan.mriqueue;
+
+/**
+ * JMX view of {@link QueueMetrics}. Counters are totals since creation or the last {@link #reset()},
+ * so rates are their deltas between polls of a monitoring tool.
+ *
+ * @author bvanchuhov
+ */
+public interface QueueMetricsMXBean {
+
+    long getOfferCount();
+
+    long getPollCount();
+
+    /**
+     * @return number of elements evicted for capacity, weight or age.
+     */
+    long getEvictionCount();
+
+    long getPeakSize();
+
+    /**
+     * @return total time, which producers have waited for contended {@code putLock}.
+     */
+    long getPutLockWaitNanos();
+
+    /**
+     * @return total time, which consumers have waited for contended {@code takeLock}.
+     */
+    long getTakeLockWaitNanos();
+
+    /**
+     * @return total time, which consumers have been blocked on an empty queue in {@code take} and {@code poll}
+     * with a timeout.
+     */
+    long getTakeBlockedNanos();
+
+    void reset();
+}
@@ -0,0 +1,39 @@
+package com.bvan.mriqueue;
+
+/**
+ * Lock-free single-producer/single-consumer implementation of {@code MostRecentlyInsertedQueue}.
+ * <p>
+ * The producer owns {@code tail} and publishes it by ordered stores,
+ * so {@link #offer(Object)} doesn't execute any atomic read-modify-write instruction or full fence,
+ * unless it overwrites a slot, which the consumer hasn't passed yet.
+ * Tail is published before the slot, so the consumer may briefly wait for an element, which isn't published yet.
+ * <p>
+ * {@link #offer(Object)} should be called by the producer thread only,
+ * {@link #poll()}, {@link #peek()} and {@link #clear()} should be called by the consumer thread only.
+ *
+ * @author bvanchuhov
+ */
+public class SpscMostRecentlyInsertedQueue<E> extends AbstractSequencedMostRecentlyInsertedQueue<E> {
+
+    /**
+     * @throws IllegalArgumentException if {@code capacity} is not positive or greater than 2^30
+     */
+    public SpscMostRecentlyInsertedQueue(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        long seq = tail.get();
+        long previous = previousInSlot(seq);
+        // tail.cache keeps the last read head, so the consumer's line is read only when the ring is about to lap it
+        boolean overwritesUnconsumed = previous >= tail.cache && previous >= (tail.cache = head.get());
+        tail.lazySet(seq + 1);
+        write(seq, e, overwritesUnconsumed);
+        return true;
+    }
+}
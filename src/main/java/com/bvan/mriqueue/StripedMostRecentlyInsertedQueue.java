@@ -0,0 +1,449 @@
+package com.bvan.mriqueue;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe implementation of {@code MostRecentlyInsertedQueue} for many producers.
+ * <p>
+ * Elements are kept in {@code stripes} rings, each with its own lock and a part of the capacity.
+ * A producer offers to the stripe chosen by hash of its thread, so producers on different stripes don't contend.
+ * Every element is stamped at insertion, and reads merge the stripes by stamps in the insertion order.
+ * <p>
+ * <b>Unlike other implementations, the queue doesn't keep exactly the last {@code capacity} elements.</b>
+ * Eviction is per stripe: a full stripe evicts its own head, which isn't necessarily the head of the whole queue,
+ * whatever the {@link Recency} is. So with uneven producers the queue keeps the most recent elements of every stripe,
+ * and a single producer thread keeps only {@code capacity / stripes} elements in its own stripe.
+ * The queue is meant for many producer threads, otherwise use {@link ConcurrentMostRecentlyInsertedQueue}.
+ *
+ * @author bvanchuhov
+ */
+public class StripedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    /**
+     * How elements of different stripes are ordered by reads. It doesn't affect eviction, which is per stripe.
+     */
+    public enum Recency {
+        /**
+         * Elements are stamped by a global sequence, so the order of reads is exactly the insertion order.
+         * Producers still contend on one atomic counter, but not on a lock.
+         */
+        ORDERED,
+        /**
+         * Elements are stamped by {@link System#nanoTime()}, so elements of different stripes,
+         * which are inserted at nearly the same time, may be read in any order.
+         * Producers don't share any written state.
+         */
+        APPROXIMATE
+    }
+
+    private final int capacity;
+    private final Recency recency;
+    private final Stripe[] stripes;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates a queue with a stripe per available processor, but not more than {@code capacity},
+     * and {@link Recency#ORDERED} recency.
+     * <p>
+     * <b>Each stripe has only a part of {@code capacity}</b>, so e.g. a queue of 1000 elements fed by one thread
+     * on 8 processors keeps only 125 elements. Use {@link #StripedMostRecentlyInsertedQueue(int, int, Recency)}
+     * to choose the number of stripes by the number of producers.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public StripedMostRecentlyInsertedQueue(int capacity) {
+        this(capacity, Math.max(1, Math.min(capacity, Runtime.getRuntime().availableProcessors())), Recency.ORDERED);
+    }
+
+    /**
+     * @param stripes number of stripes, among which {@code capacity} is divided.
+     * @throws IllegalArgumentException if {@code capacity} or {@code stripes} is not positive,
+     *                                  or {@code stripes} is greater than {@code capacity}
+     */
+    public StripedMostRecentlyInsertedQueue(int capacity, int stripes, Recency recency) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0: " + capacity);
+        }
+        if (stripes <= 0 || stripes > capacity) {
+            throw new IllegalArgumentException("stripes should be in [1, capacity]: " + stripes);
+        }
+        if (recency == null) {
+            throw new NullPointerException();
+        }
+        this.capacity = capacity;
+        this.recency = recency;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            int stripeCapacity = capacity / stripes + ((i < capacity % stripes) ? 1 : 0);
+            this.stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Recency recency() {
+        return recency;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Stripe stripe : stripes) {
+            if (stripe.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        Stripe stripe = stripes[stripeIndex()];
+        stripe.lock.lock();
+        try {
+            stripe.offer(e, stamp());
+        } finally {
+            stripe.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Polls the head of the stripe, which has the least stamp among heads of all stripes.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        while (true) {
+            int oldest = -1;
+            long minStamp = 0;
+            for (int i = 0; i < stripes.length; i++) {
+                Stripe stripe = stripes[i];
+                if (stripe.size == 0) {
+                    continue;
+                }
+                stripe.lock.lock();
+                try {
+                    if (stripe.size > 0 && (oldest < 0 || stripe.stamps[stripe.head] - minStamp < 0)) {
+                        oldest = i;
+                        minStamp = stripe.stamps[stripe.head];
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            if (oldest < 0) {
+                return null;
+            }
+
+            Stripe stripe = stripes[oldest];
+            stripe.lock.lock();
+            try {
+                // the head might have been polled or evicted since the look-up
+                if (stripe.size > 0 && stripe.stamps[stripe.head] == minStamp) {
+                    return (E) stripe.poll();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        Object res = null;
+        long minStamp = 0;
+        for (Stripe stripe : stripes) {
+            if (stripe.size == 0) {
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                if (stripe.size > 0 && (res == null || stripe.stamps[stripe.head] - minStamp < 0)) {
+                    res = stripe.items[stripe.head];
+                    minStamp = stripe.stamps[stripe.head];
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return (E) res;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Copies the stripes one by one and merges the copies by stamps,
+     * so changes made while copying may or may not be reflected.
+     */
+    @Override
+    public Object[] toArray() {
+        return merge().items;
+    }
+
+    /**
+     * @return <a href="http://docs.oracle.com/javase/8/docs/api/java/util/concurrent/package-summary.html#Weakly">
+     *     <i>weakly consistent</i>
+     * </a> iterator over copies of the stripes, which are merged by stamps.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new QueueIterator(merge());
+    }
+
+
+    private long stamp() {
+        return (recency == Recency.ORDERED) ? sequence.getAndIncrement() : System.nanoTime();
+    }
+
+    private int stripeIndex() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % stripes.length);
+    }
+
+    /**
+     * Copies the stripes one by one and merges the copies pairwise, which is O(n log stripes) time.
+     */
+    private Merged merge() {
+        Merged[] copies = new Merged[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                copies[i] = stripe.copy(i);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        for (int width = 1; width < copies.length; width *= 2) {
+            for (int i = 0; i + width < copies.length; i += 2 * width) {
+                copies[i] = copies[i].merge(copies[i + width]);
+            }
+        }
+        return copies[0];
+    }
+
+    /**
+     * Removes the element of the stripe, which has the same stamp and is the same object.
+     */
+    private void removeStamped(int stripeIndex, long stamp, Object item) {
+        Stripe stripe = stripes[stripeIndex];
+        stripe.lock.lock();
+        try {
+            for (int i = 0, index = stripe.head; i < stripe.size; i++, index = stripe.inc(index)) {
+                if (stripe.stamps[index] == stamp && stripe.items[index] == item) {
+                    stripe.removeAt(i);
+                    return;
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Left padding of {@link Stripe}.
+     */
+    private abstract static class StripeLeftPad {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    /**
+     * Fields of {@link Stripe}, which are placed by the class hierarchy between two cache lines of padding,
+     * so the {@code head} and {@code size} of neighbouring stripes, which are allocated one after another,
+     * don't share a cache line. The lock and the arrays of a stripe are allocated right after it,
+     * so they are written by the same producers.
+     */
+    private abstract static class StripeFields extends StripeLeftPad {
+        final ReentrantLock lock = new ReentrantLock();
+
+        final int capacity;
+        final Object[] items;
+        final long[] stamps;
+        int head;
+        volatile int size;
+
+        StripeFields(int capacity) {
+            this.capacity = capacity;
+            this.items = new Object[capacity];
+            this.stamps = new long[capacity];
+        }
+    }
+
+    /**
+     * A ring of items with their stamps. Guarded by its {@code lock}.
+     */
+    private static final class Stripe extends StripeFields {
+        long p11, p12, p13, p14, p15, p16, p17;
+
+        Stripe(int capacity) {
+            super(capacity);
+        }
+
+        void offer(Object e, long stamp) {
+            if (size == capacity) {
+                items[head] = e;
+                stamps[head] = stamp;
+                head = inc(head);
+            } else {
+                int index = index(size);
+                items[index] = e;
+                stamps[index] = stamp;
+                size++;
+            }
+        }
+
+        Object poll() {
+            Object res = items[head];
+            items[head] = null;
+            head = inc(head);
+            size--;
+            return res;
+        }
+
+        void clear() {
+            Arrays.fill(items, null);
+            head = 0;
+            size = 0;
+        }
+
+        void removeAt(int i) {
+            int index = index(i);
+            for (int j = i + 1; j < size; j++) {
+                int nextIndex = inc(index);
+                items[index] = items[nextIndex];
+                stamps[index] = stamps[nextIndex];
+                index = nextIndex;
+            }
+            items[index] = null;
+            size--;
+        }
+
+        Merged copy(int stripeIndex) {
+            int size = this.size;
+            Object[] itemsCopy = new Object[size];
+            long[] stampsCopy = new long[size];
+            int firstPart = Math.min(size, capacity - head);
+            System.arraycopy(items, head, itemsCopy, 0, firstPart);
+            System.arraycopy(items, 0, itemsCopy, firstPart, size - firstPart);
+            System.arraycopy(stamps, head, stampsCopy, 0, firstPart);
+            System.arraycopy(stamps, 0, stampsCopy, firstPart, size - firstPart);
+
+            int[] stripeIndexes = new int[size];
+            Arrays.fill(stripeIndexes, stripeIndex);
+            return new Merged(itemsCopy, stampsCopy, stripeIndexes);
+        }
+
+        int index(int i) {
+            int index = head + i;
+            return (index >= capacity) ? index - capacity : index;
+        }
+
+        int inc(int index) {
+            return (++index == capacity) ? 0 : index;
+        }
+    }
+
+    /**
+     * Items ordered by their stamps, with indexes of stripes they are copied from.
+     */
+    private static final class Merged {
+        final Object[] items;
+        final long[] stamps;
+        final int[] stripeIndexes;
+
+        Merged(Object[] items, long[] stamps, int[] stripeIndexes) {
+            this.items = items;
+            this.stamps = stamps;
+            this.stripeIndexes = stripeIndexes;
+        }
+
+        Merged merge(Merged other) {
+            int n = items.length + other.items.length;
+            Merged res = new Merged(new Object[n], new long[n], new int[n]);
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < n; k++) {
+                if (j == other.items.length || (i < items.length && stamps[i] - other.stamps[j] <= 0)) {
+                    res.set(k, this, i++);
+                } else {
+                    res.set(k, other, j++);
+                }
+            }
+            return res;
+        }
+
+        private void set(int k, Merged from, int index) {
+            items[k] = from.items[index];
+            stamps[k] = from.stamps[index];
+            stripeIndexes[k] = from.stripeIndexes[index];
+        }
+    }
+
+    private class QueueIterator implements Iterator<E> {
+        private final Merged merged;
+        private int cursor;
+        private int lastRet = -1;
+
+        QueueIterator(Merged merged) {
+            this.merged = merged;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < merged.items.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= merged.items.length) {
+                throw new NoSuchElementException();
+            }
+            lastRet = cursor++;
+            return (E) merged.items[lastRet];
+        }
+
+        /**
+         * Removes the last returned element, unless it has been removed from the queue already.
+         */
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            removeStamped(merged.stripeIndexes[lastRet], merged.stamps[lastRet], merged.items[lastRet]);
+            lastRet = -1;
+        }
+    }
+}
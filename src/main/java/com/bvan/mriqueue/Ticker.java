@@ -0,0 +1,21 @@
+package com.bvan.mriqueue;
+
+/**
+ * Clock, which stamps elements of queues with a max age.
+ * Millisecond resolution is enough for expiry, and it keeps stamps comparable by plain subtraction.
+ *
+ * @author bvanchuhov
+ */
+@FunctionalInterface
+interface Ticker {
+
+    /**
+     * Monotonic clock, which doesn't jump with the wall-clock time.
+     */
+    Ticker SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+    /**
+     * @return current time in milliseconds, which never decreases.
+     */
+    long millis();
+}
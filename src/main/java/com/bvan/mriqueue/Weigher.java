@@ -0,0 +1,18 @@
+package com.bvan.mriqueue;
+
+/**
+ * Computes weights of elements for queues, which are bounded by the total weight of elements
+ * instead of their number, e.g. by the number of bytes.
+ *
+ * @author bvanchuhov
+ */
+@FunctionalInterface
+public interface Weigher<E> {
+
+    /**
+     * Called once, when {@code e} is inserted.
+     *
+     * @return weight of {@code e}, which is not negative.
+     */
+    long weigh(E e);
+}
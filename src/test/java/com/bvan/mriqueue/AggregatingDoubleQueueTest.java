@@ -0,0 +1,190 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class AggregatingDoubleQueueTest {
+
+    private final MRIQueueFactory<Double> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {"AggregatingMostRecentlyInsertedDoubleQueue",
+                        (MRIQueueFactory<Double>) capacity -> new AggregatingMostRecentlyInsertedDoubleQueue(capacity, -1.0)},
+                {"ConcurrentAggregatingMostRecentlyInsertedDoubleQueue",
+                        (MRIQueueFactory<Double>) capacity -> new ConcurrentAggregatingMostRecentlyInsertedDoubleQueue(capacity, -1.0)}
+        });
+    }
+
+    public AggregatingDoubleQueueTest(String name, MRIQueueFactory<Double> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void emptyQueueHasMissingAggregates() {
+        Queue<Double> queue = queueFactory.create(3);
+
+        assertThat(sum(queue), is(0.0));
+        assertThat(mean(queue), is(-1.0));
+        assertThat(min(queue), is(-1.0));
+        assertThat(max(queue), is(-1.0));
+    }
+
+    @Test
+    public void aggregatesFollowEvictions() {
+        Queue<Double> queue = queueFactory.create(3);
+        offerAll(queue, 5.0, 1.0, 4.0);
+
+        assertAggregates(queue, 10.0, 1.0, 5.0);
+
+        queue.offer(2.0);
+        assertAggregates(queue, 7.0, 1.0, 4.0);
+
+        queue.offer(3.0);
+        assertAggregates(queue, 9.0, 2.0, 4.0);
+
+        queue.offer(0.5);
+        assertAggregates(queue, 5.5, 0.5, 3.0);
+    }
+
+    @Test
+    public void aggregatesFollowPolls() {
+        Queue<Double> queue = queueFactory.create(5);
+        offerAll(queue, 1.0, 9.0, 2.0, 8.0);
+
+        assertThat(queue.poll(), is(1.0));
+        assertAggregates(queue, 19.0, 2.0, 9.0);
+
+        assertThat(queue.poll(), is(9.0));
+        assertAggregates(queue, 10.0, 2.0, 8.0);
+
+        queue.poll();
+        queue.poll();
+        assertThat(sum(queue), is(0.0));
+        assertThat(min(queue), is(-1.0));
+    }
+
+    @Test
+    public void aggregatesAreRebuiltAfterRemovingFromMiddle() {
+        Queue<Double> queue = queueFactory.create(5);
+        offerAll(queue, 3.0, 7.0, 1.0, 5.0);
+
+        assertThat(queue.remove(1.0), is(true));
+        assertAggregates(queue, 15.0, 3.0, 7.0);
+
+        Iterator<Double> it = queue.iterator();
+        it.next();
+        it.next();
+        it.remove();
+        assertAggregates(queue, 8.0, 3.0, 5.0);
+    }
+
+    @Test
+    public void clearResetsAggregates() {
+        Queue<Double> queue = queueFactory.create(3);
+        offerAll(queue, 1.0, 2.0);
+
+        queue.clear();
+        queue.offer(6.0);
+
+        assertAggregates(queue, 6.0, 6.0, 6.0);
+    }
+
+    @Test
+    public void sumRecoversAfterNonFiniteValuesAreEvicted() {
+        Queue<Double> queue = queueFactory.create(2);
+        offerAll(queue, Double.NaN, Double.POSITIVE_INFINITY);
+
+        assertThat(sum(queue), is(Double.NaN));
+        assertThat(min(queue), is(Double.NaN));
+
+        queue.offer(1.0);
+        assertThat(sum(queue), is(Double.POSITIVE_INFINITY));
+        assertThat(max(queue), is(Double.POSITIVE_INFINITY));
+
+        queue.offer(2.0);
+        assertAggregates(queue, 3.0, 1.0, 2.0);
+    }
+
+    @Test
+    public void compensatedSumDoesNotDrift() {
+        Queue<Double> queue = queueFactory.create(3);
+        for (int i = 0; i < 100_000; i++) {
+            queue.offer(1e16);
+            queue.offer(1.0);
+            queue.offer(-1e16);
+        }
+        offerAll(queue, 0.1, 0.2, 0.3);
+
+        assertThat(sum(queue), closeTo(0.6, 1e-15));
+        assertThat(mean(queue), closeTo(0.2, 1e-15));
+    }
+
+    @Test
+    public void aggregatesMatchScanOfRandomWindow() {
+        Random random = new Random(42);
+        Queue<Double> queue = queueFactory.create(16);
+        for (int i = 0; i < 1_000; i++) {
+            if (random.nextInt(4) == 0) {
+                queue.poll();
+            } else {
+                queue.offer((double) random.nextInt(100));
+            }
+            if (queue.isEmpty()) {
+                continue;
+            }
+
+            DoubleSummaryStatistics expected = queue.stream().mapToDouble(Double::doubleValue).summaryStatistics();
+            assertAggregates(queue, expected.getSum(), expected.getMin(), expected.getMax());
+        }
+    }
+
+    private static void offerAll(Queue<Double> queue, double... values) {
+        for (double value : values) {
+            queue.offer(value);
+        }
+    }
+
+    private static void assertAggregates(Queue<Double> queue, double sum, double min, double max) {
+        assertThat(sum(queue), is(sum));
+        assertThat(mean(queue), is(sum / queue.size()));
+        assertThat(min(queue), is(min));
+        assertThat(max(queue), is(max));
+    }
+
+    private static double sum(Queue<Double> queue) {
+        return (queue instanceof AggregatingMostRecentlyInsertedDoubleQueue)
+                ? ((AggregatingMostRecentlyInsertedDoubleQueue) queue).sum()
+                : ((ConcurrentAggregatingMostRecentlyInsertedDoubleQueue) queue).sum();
+    }
+
+    private static double mean(Queue<Double> queue) {
+        return (queue instanceof AggregatingMostRecentlyInsertedDoubleQueue)
+                ? ((AggregatingMostRecentlyInsertedDoubleQueue) queue).mean()
+                : ((ConcurrentAggregatingMostRecentlyInsertedDoubleQueue) queue).mean();
+    }
+
+    private static double min(Queue<Double> queue) {
+        return (queue instanceof AggregatingMostRecentlyInsertedDoubleQueue)
+                ? ((AggregatingMostRecentlyInsertedDoubleQueue) queue).min()
+                : ((ConcurrentAggregatingMostRecentlyInsertedDoubleQueue) queue).min();
+    }
+
+    private static double max(Queue<Double> queue) {
+        return (queue instanceof AggregatingMostRecentlyInsertedDoubleQueue)
+                ? ((AggregatingMostRecentlyInsertedDoubleQueue) queue).max()
+                : ((ConcurrentAggregatingMostRecentlyInsertedDoubleQueue) queue).max();
+    }
+}
@@ -0,0 +1,234 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class AsyncTakeTest {
+
+    @Test
+    public void takeAsyncFromNonEmptyQueueIsCompletedImmediately() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        queue.offer(10);
+        queue.offer(20);
+
+        CompletableFuture<Integer> future = queue.takeAsync();
+
+        assertThat(future.getNow(null), is(10));
+        assertThat(queue, contains(20));
+    }
+
+    @Test
+    public void takeAsyncIsCompletedByOffer() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+
+        CompletableFuture<Integer> first = queue.takeAsync();
+        CompletableFuture<Integer> second = queue.takeAsync();
+        assertThat(first.isDone(), is(false));
+
+        queue.offer(10);
+        assertThat(first.get(1, TimeUnit.SECONDS), is(10));
+        assertThat(second.isDone(), is(false));
+
+        queue.offerAll(asList(20, 30));
+        assertThat(second.get(1, TimeUnit.SECONDS), is(20));
+        assertThat(queue, contains(30));
+    }
+
+    @Test
+    public void cancelledTakeAsyncIsSkipped() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+
+        CompletableFuture<Integer> cancelled = queue.takeAsync();
+        CompletableFuture<Integer> pending = queue.takeAsync();
+        cancelled.cancel(false);
+
+        queue.offer(10);
+
+        assertThat(pending.get(1, TimeUnit.SECONDS), is(10));
+        assertThat(queue, is(empty()));
+    }
+
+    @Test
+    public void takeCompletedByCallerIsNotGivenElement() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+
+        CompletableFuture<Integer> completed = queue.takeAsync();
+        assertThat(completed.complete(5), is(true));
+        queue.offer(10);
+
+        assertThat(completed.join(), is(5));
+        assertThat(queue, contains(10));
+    }
+
+    @Test
+    public void servedTakeIsNotCancelled() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        CompletableFuture<Integer> future = queue.takeAsync();
+        queue.offer(10);
+
+        assertThat(future.cancel(false), is(false));
+        assertThat(future.join(), is(10));
+        assertThat(queue, is(empty()));
+    }
+
+    @Test
+    public void manyCancelledTakesDoNotHoldElements() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(queue.takeAsync().cancel(false), is(true));
+        }
+        CompletableFuture<Integer> pending = queue.takeAsync();
+
+        queue.offerAll(asList(10, 20));
+
+        assertThat(pending.join(), is(10));
+        assertThat(queue, contains(20));
+    }
+
+    @Test
+    public void publisherDeliversUpToDemand() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(5);
+        queue.offerAll(asList(10, 20, 30));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        new MostRecentlyInsertedPublisher<>(queue, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        assertThat(subscriber.received, contains(10, 20));
+        assertThat(queue, contains(30));
+    }
+
+    @Test
+    public void publisherDeliversElementsOfferedLater() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        new MostRecentlyInsertedPublisher<>(queue, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(2);
+        queue.offer(10);
+        queue.offer(20);
+        queue.offer(30);
+
+        assertThat(subscriber.received, contains(10, 20));
+        assertThat(queue, contains(30));
+    }
+
+    @Test
+    public void slowSubscriberReceivesMostRecentElements() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        new MostRecentlyInsertedPublisher<>(queue, Runnable::run).subscribe(subscriber);
+        queue.offerAll(asList(10, 20, 30, 40));
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertThat(subscriber.received, contains(30, 40));
+    }
+
+    @Test
+    public void cancelledSubscriptionReleasesPendingTake() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        new MostRecentlyInsertedPublisher<>(queue, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(5);
+        subscriber.subscription.cancel();
+        queue.offer(10);
+
+        assertThat(subscriber.received, is(empty()));
+        assertThat(queue, contains(10));
+    }
+
+    @Test
+    public void cancelledSubscriptionDeliversElementOfServedTake() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Queue<Runnable> tasks = new ArrayDeque<>();
+
+        new MostRecentlyInsertedPublisher<>(queue, tasks::add).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        tasks.poll().run();
+        queue.offer(10);
+        subscriber.subscription.cancel();
+        queue.offer(20);
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+
+        assertThat(subscriber.received, contains(10));
+        assertThat(queue, contains(20));
+    }
+
+    @Test
+    public void nonPositiveRequestSignalsError() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        new MostRecentlyInsertedPublisher<>(queue, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        queue.offer(10);
+
+        assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+        assertThat(queue, contains(10));
+    }
+
+    @Test
+    public void nonPositiveRequestErrorIsSignalledByDrainTask() {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Queue<Runnable> tasks = new ArrayDeque<>();
+
+        new MostRecentlyInsertedPublisher<>(queue, tasks::add).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        subscriber.subscription.request(-1);
+
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(tasks, hasSize(1));
+
+        tasks.poll().run();
+
+        assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+        assertThat(subscriber.errorCount, is(1));
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Integer> {
+        final List<Integer> received = new CopyOnWriteArrayList<>();
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile int errorCount;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            errorCount++;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class ConflatingMostRecentlyInsertedBlockingQueueTest {
+
+    @Test
+    public void queuedElemIsReplacedInPlace() {
+        Queue<String> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(3, s -> s.charAt(0));
+        offerAll(queue, asList("a1", "b1", "c1"));
+
+        queue.offer("a2");
+        queue.offer("a3");
+
+        assertThat(queue, contains("a3", "b1", "c1"));
+        assertThat(queue.poll(), is("a3"));
+    }
+
+    @Test
+    public void burstOfOneKeyDoesNotEvictOtherKeys() {
+        List<String> evicted = new ArrayList<>();
+        Queue<String> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(3, s -> s.charAt(0), evicted::add);
+        offerAll(queue, asList("a1", "b1", "c1"));
+
+        for (int i = 2; i < 100; i++) {
+            queue.offer("b" + i);
+        }
+
+        assertThat(evicted, is(empty()));
+        assertThat(queue, contains("a1", "b99", "c1"));
+    }
+
+    @Test
+    public void distinctKeysAreEvictedFromHead() {
+        List<String> evicted = new ArrayList<>();
+        Queue<String> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(2, s -> s.charAt(0), evicted::add);
+        offerAll(queue, asList("a1", "b1", "a2", "c1"));
+
+        assertThat(evicted, contains("a2"));
+        assertThat(queue, contains("b1", "c1"));
+    }
+
+    @Test
+    public void takenKeyIsInsertedAtTail() {
+        Queue<String> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(3, s -> s.charAt(0));
+        offerAll(queue, asList("a1", "b1"));
+
+        queue.poll();
+        queue.offer("a2");
+
+        assertThat(queue, contains("b1", "a2"));
+        assertThat(queue.contains("a1"), is(false));
+        assertThat(queue.contains("a2"), is(true));
+    }
+
+    @Test
+    public void removeKeepsElemReplacedWhileChecked() {
+        Queue<CharSequence> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(3, s -> s.charAt(0));
+        offerAll(queue, asList("a1", "b1"));
+
+        boolean removed = queue.remove(new ReplacingElem("a1", () -> queue.offer("a2")));
+
+        assertThat(removed, is(false));
+        assertThat(queue, contains("a2", "b1"));
+    }
+
+    @Test
+    public void offerAwakesTakingThread() throws InterruptedException {
+        BlockingQueue<String> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(3, s -> s.charAt(0));
+        List<String> taken = new ArrayList<>();
+        Thread takingThread = new Thread(() -> {
+            try {
+                taken.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        takingThread.start();
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        queue.offer("a1");
+        takingThread.join(1000);
+
+        assertThat(taken, contains("a1"));
+    }
+
+    @Test
+    public void consumerReceivesLatestElemOfEveryKey() throws InterruptedException {
+        BlockingQueue<int[]> queue = new ConflatingMostRecentlyInsertedBlockingQueue<>(16, e -> e[0]);
+        int keys = 16;
+        int updatesPerKey = 20_000;
+        Map<Integer, Integer> lastTaken = new ConcurrentHashMap<>();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        for (int p = 0; p < 2; p++) {
+            int firstKey = p * keys / 2;
+            executorService.submit(() -> {
+                for (int v = 1; v <= updatesPerKey; v++) {
+                    for (int key = firstKey; key < firstKey + keys / 2; key++) {
+                        queue.offer(new int[]{key, v});
+                    }
+                }
+            });
+        }
+        executorService.submit(() -> {
+            try {
+                int[] e;
+                while ((e = queue.poll(200, TimeUnit.MILLISECONDS)) != null) {
+                    Integer previous = lastTaken.put(e[0], e[1]);
+                    if (previous != null && previous >= e[1]) {
+                        errors.add(e[0] + ": " + previous + " before " + e[1]);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        assertThat(errors, is(empty()));
+        assertThat(queue, is(empty()));
+        for (int key = 0; key < keys; key++) {
+            assertThat(lastTaken.get(key), is(updatesPerKey));
+        }
+    }
+
+    /**
+     * Element, which is equal to {@code value} and runs {@code onEquals} while it's compared.
+     */
+    private static final class ReplacingElem implements CharSequence {
+        private final String value;
+        private final Runnable onEquals;
+
+        ReplacingElem(String value, Runnable onEquals) {
+            this.value = value;
+            this.onEquals = onEquals;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            onEquals.run();
+            return value.equals(obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
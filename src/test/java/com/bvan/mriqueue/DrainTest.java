@@ -0,0 +1,182 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class DrainTest {
+
+    private final Function<Integer, Queue<Integer>> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "ConcurrentMostRecentlyInsertedQueue",
+                        (Function<Integer, Queue<Integer>>) ConcurrentMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MostRecentlyInsertedBlockingQueue",
+                        (Function<Integer, Queue<Integer>>) MostRecentlyInsertedBlockingQueue::new
+                }
+        });
+    }
+
+    public DrainTest(String name, Function<Integer, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void drainLessThanSize() {
+        Queue<Integer> queue = queueFactory.apply(5);
+        offerAll(queue, asList(10, 20, 30, 40));
+        List<Integer> drained = new ArrayList<>();
+
+        assertThat(drain(queue, drained, 3), is(3));
+
+        assertThat(drained, contains(10, 20, 30));
+        assertThat(queue, contains(40));
+        assertThat(queue, hasSize(1));
+    }
+
+    @Test
+    public void drainAllAndOfferAgain() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30, 40));
+        List<Integer> drained = new ArrayList<>();
+
+        assertThat(drain(queue, drained, Integer.MAX_VALUE), is(3));
+        assertThat(queue, is(empty()));
+        assertThat(queue.poll(), is(nullValue()));
+
+        offerAll(queue, asList(50, 60, 70, 80));
+        assertThat(drained, contains(20, 30, 40));
+        assertThat(queue, contains(60, 70, 80));
+    }
+
+    @Test
+    public void drainEmptyQueue() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        List<Integer> drained = new ArrayList<>();
+
+        assertThat(drain(queue, drained, 10), is(0));
+        assertThat(drained, is(empty()));
+    }
+
+    @Test
+    public void consumerExceptionDropsRestOfBatch() {
+        Queue<Integer> queue = queueFactory.apply(5);
+        offerAll(queue, asList(10, 20, 30, 40));
+        List<Integer> drained = new ArrayList<>();
+
+        try {
+            drain(queue, e -> {
+                if (e == 20) {
+                    throw new IllegalStateException();
+                }
+                drained.add(e);
+            }, 3);
+        } catch (IllegalStateException expected) {
+            // rest of the batch is dropped
+        }
+
+        assertThat(drained, contains(10));
+        assertThat(queue, contains(40));
+    }
+
+    @Test
+    public void pollBatchLessThanSize() {
+        Queue<Integer> queue = queueFactory.apply(5);
+        offerAll(queue, asList(10, 20, 30));
+        Integer[] dst = new Integer[2];
+
+        assertThat(pollBatch(queue, dst), is(2));
+
+        assertThat(dst, arrayContaining(10, 20));
+        assertThat(queue, contains(30));
+    }
+
+    @Test
+    public void pollBatchGreaterThanSize() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30, 40));
+        Integer[] dst = new Integer[5];
+
+        assertThat(pollBatch(queue, dst), is(3));
+
+        assertThat(dst, arrayContaining(20, 30, 40, null, null));
+        assertThat(queue, is(empty()));
+        queue.offer(50);
+        assertThat(queue, contains(50));
+    }
+
+    @Test
+    public void offerAndDrainAtMultithreading() throws InterruptedException {
+        Queue<Integer> queue = queueFactory.apply(64);
+        Queue<Integer> drained = new ConcurrentLinkedQueue<>();
+
+        int producersCount = 2;
+        int elemsPerProducer = 50_000;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(producersCount + 2);
+        for (int p = 0; p < producersCount; p++) {
+            int offset = p * elemsPerProducer;
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    queue.offer(offset + i);
+                }
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer / 10; i++) {
+                    drain(queue, drained, 16);
+                }
+            });
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        List<Integer> all = new ArrayList<>(drained);
+        all.addAll(queue);
+        assertThat(new HashSet<>(all), hasSize(all.size()));
+        assertThat(queue.size(), is(lessThanOrEqualTo(64)));
+        assertThat(queue.size(), is(queue.toArray().length));
+    }
+
+    private static int drain(Queue<Integer> queue, Collection<Integer> c, int maxElements) {
+        return drain(queue, c::add, maxElements);
+    }
+
+    private static int drain(Queue<Integer> queue, Consumer<Integer> consumer, int maxElements) {
+        if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            return ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).drain(consumer, maxElements);
+        }
+        return ((MostRecentlyInsertedBlockingQueue<Integer>) queue).drain(consumer, maxElements);
+    }
+
+    private static int pollBatch(Queue<Integer> queue, Integer[] dst) {
+        if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            return ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).pollBatch(dst);
+        }
+        return ((MostRecentlyInsertedBlockingQueue<Integer>) queue).pollBatch(dst);
+    }
+}
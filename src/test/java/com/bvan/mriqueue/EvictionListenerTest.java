@@ -0,0 +1,114 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class EvictionListenerTest {
+
+    private final BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "MostRecentlyInsertedQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) MostRecentlyInsertedQueue::new
+                },
+                {
+                        "ConcurrentMostRecentlyInsertedQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) ConcurrentMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MostRecentlyInsertedBlockingQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) MostRecentlyInsertedBlockingQueue::new
+                }
+        });
+    }
+
+    public EvictionListenerTest(String name, BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void evictedElemsArePassedToListener() {
+        List<Integer> evicted = new ArrayList<>();
+        Queue<Integer> queue = queueFactory.apply(3, evicted::add);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(evicted, contains(10, 20));
+        assertThat(queue, contains(30, 40, 50));
+    }
+
+    @Test
+    public void polledAndRemovedElemsAreNotPassedToListener() {
+        List<Integer> evicted = new ArrayList<>();
+        Queue<Integer> queue = queueFactory.apply(3, evicted::add);
+        offerAll(queue, asList(10, 20, 30));
+
+        queue.poll();
+        queue.remove(20);
+        queue.clear();
+
+        assertThat(evicted, is(empty()));
+    }
+
+    @Test
+    public void backgroundReleaserReleasesAllEvictedElems() {
+        List<Integer> released = new CopyOnWriteArrayList<>();
+        BackgroundEvictionReleaser<Integer> releaser = new BackgroundEvictionReleaser<>(2, 16, released::add);
+        Queue<Integer> queue = queueFactory.apply(1, releaser);
+
+        for (int i = 0; i < 100; i++) {
+            queue.offer(i);
+        }
+        releaser.close();
+
+        assertThat(released, hasSize(99));
+        assertThat(new HashSet<>(released), hasSize(99));
+        assertThat(queue, contains(99));
+    }
+
+    @Test
+    public void elemsEvictedAfterCloseAreReleasedByEvictingThread() {
+        List<Integer> released = new CopyOnWriteArrayList<>();
+        BackgroundEvictionReleaser<Integer> releaser = new BackgroundEvictionReleaser<>(2, 16, released::add);
+        Queue<Integer> queue = queueFactory.apply(1, releaser);
+        releaser.close();
+
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(released, contains(10, 20));
+    }
+
+    @Test
+    public void interruptedCloseKeepsInterruptStatus() {
+        List<Integer> released = new CopyOnWriteArrayList<>();
+        BackgroundEvictionReleaser<Integer> releaser = new BackgroundEvictionReleaser<>(2, 16, released::add);
+        releaser.onEviction(10);
+
+        Thread.currentThread().interrupt();
+        releaser.close();
+
+        assertThat(Thread.interrupted(), is(true));
+        releaser.onEviction(20);
+        assertThat(released, hasItem(20));
+        while (!released.contains(10)) {
+            Thread.yield();
+        }
+    }
+}
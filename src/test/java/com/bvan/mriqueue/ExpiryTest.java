@@ -0,0 +1,150 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class ExpiryTest {
+
+    private static final long MAX_AGE_MILLIS = 100;
+
+    private final TimedQueueFactory queueFactory;
+
+    private final AtomicLong time = new AtomicLong(1_000);
+    private final List<Integer> evicted = new ArrayList<>();
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {"MostRecentlyInsertedQueue", (TimedQueueFactory) MostRecentlyInsertedQueue::new},
+                {"ConcurrentMostRecentlyInsertedQueue", (TimedQueueFactory) ConcurrentMostRecentlyInsertedQueue::new},
+                {"MostRecentlyInsertedBlockingQueue", (TimedQueueFactory) MostRecentlyInsertedBlockingQueue::new}
+        });
+    }
+
+    public ExpiryTest(String name, TimedQueueFactory queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void elemsAreKeptUntilMaxAge() {
+        Queue<Integer> queue = createQueue(5);
+        offerAll(queue, asList(10, 20, 30));
+
+        time.addAndGet(MAX_AGE_MILLIS - 1);
+
+        assertThat(queue, contains(10, 20, 30));
+        assertThat(queue.peek(), is(10));
+        assertThat(evicted, is(empty()));
+    }
+
+    @Test
+    public void expiredElemsAreDroppedBySize() {
+        Queue<Integer> queue = createQueue(5);
+        offerAll(queue, asList(10, 20));
+        time.addAndGet(50);
+        offerAll(queue, asList(30, 40));
+
+        time.addAndGet(50);
+
+        assertThat(queue.size(), is(2));
+        assertThat(evicted, contains(10, 20));
+        assertThat(queue, contains(30, 40));
+    }
+
+    @Test
+    public void expiredElemsAreNotPolled() {
+        Queue<Integer> queue = createQueue(5);
+        offerAll(queue, asList(10, 20));
+        time.addAndGet(50);
+        queue.offer(30);
+
+        time.addAndGet(50);
+
+        assertThat(queue.peek(), is(30));
+        assertThat(queue.poll(), is(30));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(evicted, contains(10, 20));
+    }
+
+    @Test
+    public void expiredElemsAreDroppedByOffer() {
+        Queue<Integer> queue = createQueue(3);
+        offerAll(queue, asList(10, 20));
+
+        time.addAndGet(MAX_AGE_MILLIS);
+        offerAll(queue, asList(30, 40));
+
+        assertThat(evicted, contains(10, 20));
+        assertThat(queue, contains(30, 40));
+    }
+
+    @Test
+    public void expiredElemsAreNotIterated() {
+        Queue<Integer> queue = createQueue(5);
+        offerAll(queue, asList(10, 20, 30));
+
+        time.addAndGet(MAX_AGE_MILLIS);
+
+        assertThat(queue.iterator().hasNext(), is(false));
+        assertThat(queue.toArray(), is(emptyArray()));
+        assertThat(queue.isEmpty(), is(true));
+    }
+
+    @Test
+    public void fullQueueStillEvictsByCapacity() {
+        Queue<Integer> queue = createQueue(2);
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(evicted, contains(10));
+        assertThat(queue, contains(20, 30));
+
+        time.addAndGet(MAX_AGE_MILLIS);
+        queue.offer(40);
+
+        assertThat(evicted, contains(10, 20, 30));
+        assertThat(queue, contains(40));
+    }
+
+    @Test
+    public void removingFromMiddleKeepsStampsOfOtherElems() {
+        Queue<Integer> queue = createQueue(5);
+        queue.offer(10);
+        time.addAndGet(50);
+        offerAll(queue, asList(20, 30));
+
+        queue.remove(20);
+        time.addAndGet(50);
+
+        assertThat(queue, contains(30));
+        assertThat(evicted, contains(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveMaxAgeIsRejected() {
+        new ConcurrentMostRecentlyInsertedQueue<Integer>(3, 0, TimeUnit.SECONDS);
+    }
+
+    private Queue<Integer> createQueue(int capacity) {
+        return queueFactory.create(capacity, evicted::add, MAX_AGE_MILLIS, time::get);
+    }
+
+    @FunctionalInterface
+    interface TimedQueueFactory {
+        Queue<Integer> create(int capacity, EvictionListener<Integer> evictionListener, long maxAgeMillis, Ticker ticker);
+    }
+}
@@ -0,0 +1,132 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class IndexedAccessTest {
+
+    private final MRIQueueFactory<Integer> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {"MostRecentlyInsertedQueue", (MRIQueueFactory<Integer>) MostRecentlyInsertedQueue::new},
+                {"ConcurrentMostRecentlyInsertedQueue", (MRIQueueFactory<Integer>) ConcurrentMostRecentlyInsertedQueue::new},
+                {"MostRecentlyInsertedBlockingQueue", (MRIQueueFactory<Integer>) MostRecentlyInsertedBlockingQueue::new}
+        });
+    }
+
+    public IndexedAccessTest(String name, MRIQueueFactory<Integer> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void getCountsFromHeadAndFromTail() {
+        Queue<Integer> queue = queueFactory.create(4);
+        offerAll(queue, asList(10, 20, 30, 40, 50, 60));
+        queue.poll();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(get(queue, i), is(40 + 10 * i));
+            assertThat(getFromTail(queue, i), is(60 - 10 * i));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getBeyondSizeThrowsException() {
+        Queue<Integer> queue = queueFactory.create(4);
+        offerAll(queue, asList(10, 20));
+
+        get(queue, 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getFromTailOfEmptyQueueThrowsException() {
+        getFromTail(queueFactory.create(4), 0);
+    }
+
+    @Test
+    public void lastKCopiesMostRecentElemsInQueueOrder() {
+        Queue<Integer> queue = queueFactory.create(5);
+        offerAll(queue, asList(10, 20, 30, 40, 50, 60, 70));
+
+        Integer[] dst = new Integer[3];
+
+        assertThat(lastK(queue, 3, dst), is(3));
+        assertThat(asList(dst), contains(50, 60, 70));
+    }
+
+    @Test
+    public void lastKIsLimitedBySize() {
+        Queue<Integer> queue = queueFactory.create(5);
+        offerAll(queue, asList(10, 20));
+
+        Integer[] dst = new Integer[4];
+
+        assertThat(lastK(queue, 4, dst), is(2));
+        assertThat(asList(dst), contains(10, 20, null, null));
+        assertThat(lastK(queue, 0, dst), is(0));
+    }
+
+    @Test
+    public void indexesAreKeptAfterRemovingFromMiddle() {
+        Queue<Integer> queue = queueFactory.create(8);
+        offerAll(queue, asList(10, 20, 30, 40, 50, 60));
+
+        queue.remove(30);
+        queue.addAll(asList(70, 80));
+
+        List<Integer> fromTail = new ArrayList<>();
+        for (int k = 0; k < queue.size(); k++) {
+            fromTail.add(getFromTail(queue, k));
+        }
+        assertThat(fromTail, contains(80, 70, 60, 50, 40, 20, 10));
+        assertThat(get(queue, 2), is(40));
+        assertThat(get(queue, 5), is(70));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lastKGreaterThanDstLengthThrowsException() {
+        lastK(queueFactory.create(4), 3, new Integer[2]);
+    }
+
+    private static Integer get(Queue<Integer> queue, int index) {
+        if (queue instanceof MostRecentlyInsertedQueue) {
+            return ((MostRecentlyInsertedQueue<Integer>) queue).get(index);
+        } else if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            return ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).get(index);
+        }
+        return ((MostRecentlyInsertedBlockingQueue<Integer>) queue).get(index);
+    }
+
+    private static Integer getFromTail(Queue<Integer> queue, int k) {
+        if (queue instanceof MostRecentlyInsertedQueue) {
+            return ((MostRecentlyInsertedQueue<Integer>) queue).getFromTail(k);
+        } else if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            return ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).getFromTail(k);
+        }
+        return ((MostRecentlyInsertedBlockingQueue<Integer>) queue).getFromTail(k);
+    }
+
+    private static int lastK(Queue<Integer> queue, int k, Integer[] dst) {
+        if (queue instanceof MostRecentlyInsertedQueue) {
+            return ((MostRecentlyInsertedQueue<Integer>) queue).lastK(k, dst);
+        } else if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            return ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).lastK(k, dst);
+        }
+        return ((MostRecentlyInsertedBlockingQueue<Integer>) queue).lastK(k, dst);
+    }
+}
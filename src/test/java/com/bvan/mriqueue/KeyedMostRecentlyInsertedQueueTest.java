@@ -0,0 +1,144 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class KeyedMostRecentlyInsertedQueueTest {
+
+    @Test
+    public void reofferedKeyIsMovedToTail() {
+        Queue<Integer> queue = new KeyedMostRecentlyInsertedQueue<>(3, Function.identity());
+        offerAll(queue, asList(10, 20, 30));
+
+        queue.offer(10);
+
+        assertThat(queue, contains(20, 30, 10));
+        assertThat(queue, hasSize(3));
+    }
+
+    @Test
+    public void reofferedKeyReplacesElem() {
+        Queue<String> queue = new KeyedMostRecentlyInsertedQueue<>(3, s -> s.charAt(0));
+        offerAll(queue, asList("a1", "b1", "c1"));
+
+        queue.offer("b2");
+
+        assertThat(queue, contains("a1", "c1", "b2"));
+        assertThat(queue.contains("b1"), is(false));
+        assertThat(queue.contains("b2"), is(true));
+    }
+
+    @Test
+    public void headOfDistinctKeysIsEvicted() {
+        List<Integer> evicted = new ArrayList<>();
+        Queue<Integer> queue = new KeyedMostRecentlyInsertedQueue<>(3, Function.identity(), evicted::add);
+        offerAll(queue, asList(10, 20, 30, 10, 40, 50));
+
+        assertThat(evicted, contains(20, 30));
+        assertThat(queue, contains(10, 40, 50));
+    }
+
+    @Test
+    public void evictedKeyIsInsertedAgain() {
+        KeyedMostRecentlyInsertedQueue<Integer, Integer> queue =
+                new KeyedMostRecentlyInsertedQueue<>(2, Function.identity());
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(queue.containsKey(10), is(false));
+
+        queue.offer(10);
+
+        assertThat(queue, contains(30, 10));
+    }
+
+    @Test
+    public void removeAndPollKeepIndexInSync() {
+        KeyedMostRecentlyInsertedQueue<Integer, Integer> queue =
+                new KeyedMostRecentlyInsertedQueue<>(3, Function.identity());
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(queue.poll(), is(10));
+        assertThat(queue.remove(30), is(true));
+        assertThat(queue.removeKey(20), is(20));
+        assertThat(queue, is(empty()));
+
+        offerAll(queue, asList(10, 20, 30));
+        assertThat(queue, contains(10, 20, 30));
+    }
+
+    @Test
+    public void iteratorRemovesOnlyElemsStillInQueue() {
+        Queue<Integer> queue = new KeyedMostRecentlyInsertedQueue<>(3, Function.identity());
+        offerAll(queue, asList(10, 20, 30));
+
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        queue.offer(10);
+        iterator.remove();
+        iterator.next();
+        iterator.remove();
+
+        assertThat(queue, contains(30, 10));
+    }
+
+    @Test
+    public void iteratorRemoveAfterClearKeepsNewElems() {
+        Queue<String> queue = new KeyedMostRecentlyInsertedQueue<>(3, s -> s.charAt(0));
+        offerAll(queue, asList("a1", "b1"));
+
+        Iterator<String> iterator = queue.iterator();
+        iterator.next();
+        queue.clear();
+        offerAll(queue, asList("a2", "c2"));
+        iterator.remove();
+
+        assertThat(queue, contains("a2", "c2"));
+        assertThat(queue, hasSize(2));
+        assertThat(queue.toArray(), is(new Object[]{"a2", "c2"}));
+    }
+
+    @Test
+    public void offerAndPollAtMultithreading() throws InterruptedException {
+        KeyedMostRecentlyInsertedQueue<Integer, Integer> queue =
+                new KeyedMostRecentlyInsertedQueue<>(100, Function.identity());
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 3; t++) {
+            int seed = t;
+            executorService.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    queue.offer(random.nextInt(300));
+                }
+            });
+        }
+        executorService.submit(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                queue.poll();
+            }
+        });
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        List<Integer> elems = new ArrayList<>(queue);
+        assertThat(elems.size(), is(lessThanOrEqualTo(100)));
+        assertThat(new HashSet<>(elems), hasSize(elems.size()));
+        assertThat(queue, hasSize(elems.size()));
+        for (Integer e : elems) {
+            assertThat(queue.containsKey(e), is(true));
+        }
+    }
+}
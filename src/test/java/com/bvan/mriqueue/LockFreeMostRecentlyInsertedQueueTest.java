@@ -0,0 +1,172 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class LockFreeMostRecentlyInsertedQueueTest {
+
+    @Test
+    public void offerElemsGreaterThanCapacity() {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue, contains(30, 40, 50));
+        assertThat(queue, hasSize(3));
+    }
+
+    @Test
+    public void offerAndPollWithNotPowerOfTwoCapacity() {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20, 30, 40, 50, 60, 70));
+
+        assertThat(queue.peek(), is(50));
+        assertThat(queue.poll(), is(50));
+        assertThat(queue.poll(), is(60));
+        assertThat(queue.poll(), is(70));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(queue.peek(), is(nullValue()));
+    }
+
+    @Test
+    public void offerAndClear() {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(1);
+        offerAll(queue, asList(10, 20));
+
+        queue.clear();
+
+        assertThat(queue, is(empty()));
+        queue.offer(30);
+        assertThat(queue, contains(30));
+    }
+
+    @Test
+    public void removeMiddleElem() {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(queue.remove(20), is(true));
+        assertThat(queue.remove(20), is(false));
+
+        assertThat(queue, contains(10, 30));
+        assertThat(queue.poll(), is(10));
+        assertThat(queue.poll(), is(30));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void removedHeadIsSkipped() {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20));
+
+        assertThat(queue.remove(10), is(true));
+
+        assertThat(queue.peek(), is(20));
+        assertThat(queue.poll(), is(20));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(queue, is(empty()));
+    }
+
+    @Test
+    public void removedElemKeepsSlotUntilEvicted() {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20, 30));
+        queue.remove(10);
+
+        assertThat(queue, hasSize(3));
+        queue.offer(40);
+
+        assertThat(queue, contains(20, 30, 40));
+    }
+
+    @Test
+    public void removeAndPollAtMultithreading() throws InterruptedException {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(64);
+        Queue<Integer> polled = new ConcurrentLinkedQueue<>();
+        Queue<Integer> removed = new ConcurrentLinkedQueue<>();
+
+        int producersCount = 2;
+        int elemsPerProducer = 100_000;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(producersCount + 2);
+        for (int p = 0; p < producersCount; p++) {
+            int offset = p * elemsPerProducer;
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    queue.offer(offset + i);
+                }
+            });
+        }
+        executorService.submit(() -> {
+            for (int i = 0; i < elemsPerProducer; i++) {
+                Integer elem = queue.poll();
+                if (elem != null) {
+                    polled.add(elem);
+                }
+            }
+        });
+        executorService.submit(() -> {
+            for (int i = 0; i < elemsPerProducer; i++) {
+                Integer elem = queue.peek();
+                if (elem != null && queue.remove(elem)) {
+                    removed.add(elem);
+                }
+            }
+        });
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        List<Integer> all = new ArrayList<>(polled);
+        all.addAll(removed);
+        all.addAll(queue);
+        assertThat(new HashSet<>(all), hasSize(all.size()));
+    }
+
+    @Test
+    public void offerAndPollAtMultithreading() throws InterruptedException {
+        Queue<Integer> queue = new LockFreeMostRecentlyInsertedQueue<>(64);
+        Queue<Integer> polled = new ConcurrentLinkedQueue<>();
+
+        int producersCount = 4;
+        int elemsPerProducer = 100_000;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(producersCount + 2);
+        for (int p = 0; p < producersCount; p++) {
+            int offset = p * elemsPerProducer;
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    queue.offer(offset + i);
+                }
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    Integer elem = queue.poll();
+                    if (elem != null) {
+                        polled.add(elem);
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        List<Integer> all = new ArrayList<>(polled);
+        all.addAll(queue);
+        assertThat(new HashSet<>(all), hasSize(all.size()));
+        assertThat(queue.size(), is(lessThanOrEqualTo(64)));
+    }
+}
@@ -2,9 +2,10 @@ package com.bvan.mriqueue;
 
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -67,6 +68,25 @@ public class MostRecentlyInsertedBlockingQueueTest {
         assertThat(takingThread.getState(), is(Thread.State.TERMINATED));
     }
 
+    @Test
+    public void offerAllAwakesTakingThreads() throws InterruptedException {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+
+        Thread firstTakingThread = new Thread(() -> takeTask(queue));
+        Thread secondTakingThread = new Thread(() -> takeTask(queue));
+        firstTakingThread.start();
+        secondTakingThread.start();
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        queue.offerAll(asList(10, 20, 30, 40));
+        firstTakingThread.join(1000);
+        secondTakingThread.join(1000);
+
+        assertThat(firstTakingThread.getState(), is(Thread.State.TERMINATED));
+        assertThat(secondTakingThread.getState(), is(Thread.State.TERMINATED));
+        assertThat(queue, hasSize(1));
+    }
+
     @Test
     public void fillAndEmptyQueue_takingFromEmptyQueueShouldBlockThread() throws InterruptedException {
         BlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
@@ -102,6 +122,121 @@ public class MostRecentlyInsertedBlockingQueueTest {
         assertThat(queue, is(empty()));
     }
 
+    @Test
+    public void evictingProducerDoesNotWaitForConsumer() throws InterruptedException {
+        BlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        offerAll(queue, asList(10, 20, 30));
+
+        CountDownLatch consumerInsideDrain = new CountDownLatch(1);
+        CountDownLatch releaseConsumer = new CountDownLatch(1);
+        List<Integer> drained = new ArrayList<>();
+        Thread consumer = new Thread(() -> queue.drainTo(new AbstractCollection<Integer>() {
+            @Override
+            public boolean add(Integer e) {
+                drained.add(e);
+                consumerInsideDrain.countDown();
+                try {
+                    releaseConsumer.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int size() {
+                return drained.size();
+            }
+        }, 1));
+        consumer.start();
+        assertThat(consumerInsideDrain.await(1, TimeUnit.SECONDS), is(true));
+
+        queue.offer(40);
+        queue.offer(50);
+        queue.offer(60);
+
+        releaseConsumer.countDown();
+        consumer.join(1000);
+        assertThat(drained, contains(10));
+        assertThat(queue, contains(40, 50, 60));
+    }
+
+    @Test
+    public void offerAndTakeWithEvictionAtMultithreading() throws InterruptedException {
+        Queue<Integer> evicted = new ConcurrentLinkedQueue<>();
+        Queue<Integer> taken = new ConcurrentLinkedQueue<>();
+        BlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(16, evicted::add);
+
+        int producersCount = 2;
+        int elemsPerProducer = 50_000;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(producersCount + 2);
+        for (int p = 0; p < producersCount; p++) {
+            int offset = p * elemsPerProducer;
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    queue.offer(offset + i);
+                }
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            executorService.submit(() -> {
+                try {
+                    Integer e;
+                    while ((e = queue.poll(100, TimeUnit.MILLISECONDS)) != null) {
+                        taken.add(e);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        Set<Integer> all = new HashSet<>(evicted);
+        all.addAll(taken);
+        all.addAll(queue);
+        assertThat(all, hasSize(producersCount * elemsPerProducer));
+        assertThat(evicted.size() + taken.size() + queue.size(), is(producersCount * elemsPerProducer));
+    }
+
+    @Test
+    public void peekOfFullQueueWhileProducersEvict() throws InterruptedException {
+        BlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(4);
+        offerAll(queue, asList(0, 0, 0, 0));
+        Queue<Integer> peekedNulls = new ConcurrentLinkedQueue<>();
+
+        int producersCount = 2;
+        int peekersCount = 2;
+        ExecutorService executorService = Executors.newFixedThreadPool(producersCount + peekersCount);
+        for (int p = 0; p < producersCount; p++) {
+            executorService.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    queue.offer(i);
+                }
+            });
+        }
+        for (int c = 0; c < peekersCount; c++) {
+            executorService.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    if (queue.peek() == null) {
+                        peekedNulls.add(i);
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS), is(true));
+
+        assertThat(peekedNulls, is(empty()));
+    }
+
     private void putTask(BlockingQueue<Integer> queue) {
         try {
             queue.put(10);
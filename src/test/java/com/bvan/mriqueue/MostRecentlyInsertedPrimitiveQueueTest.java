@@ -0,0 +1,102 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+
+import java.util.PrimitiveIterator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class MostRecentlyInsertedPrimitiveQueueTest {
+
+    @Test
+    public void offerLongsGreaterThanCapacity() {
+        MostRecentlyInsertedLongQueue queue = new MostRecentlyInsertedLongQueue(3);
+        for (long i = 1; i <= 5; i++) {
+            queue.offerLong(i * 10);
+        }
+
+        assertThat(queue, contains(30L, 40L, 50L));
+        assertThat(queue.peekLong(), is(30L));
+        assertThat(queue.pollLong(), is(30L));
+        assertThat(queue.pollLong(), is(40L));
+        assertThat(queue.pollLong(), is(50L));
+        assertThat(queue.pollLong(), is(0L));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void concurrentOfferLongsGreaterThanCapacity() {
+        ConcurrentMostRecentlyInsertedLongQueue queue = new ConcurrentMostRecentlyInsertedLongQueue(3, -1L);
+        for (long i = 1; i <= 5; i++) {
+            queue.offerLong(i * 10);
+        }
+
+        assertThat(queue, contains(30L, 40L, 50L));
+        assertThat(queue.pollLong(), is(30L));
+        assertThat(queue.pollLong(), is(40L));
+        assertThat(queue.pollLong(), is(50L));
+        assertThat(queue.pollLong(), is(-1L));
+        assertThat(queue.peekLong(), is(-1L));
+    }
+
+    @Test
+    public void removeAfterWrapAround() {
+        ConcurrentMostRecentlyInsertedIntQueue queue = new ConcurrentMostRecentlyInsertedIntQueue(3);
+        for (int i = 1; i <= 5; i++) {
+            queue.offerInt(i * 10);
+        }
+
+        assertThat(queue.remove(40), is(true));
+        assertThat(queue.remove(40), is(false));
+        queue.offerInt(60);
+
+        assertThat(queue, contains(30, 50, 60));
+    }
+
+    @Test
+    public void removeByPrimitiveIterator() {
+        MostRecentlyInsertedIntQueue queue = new MostRecentlyInsertedIntQueue(3);
+        for (int i = 1; i <= 4; i++) {
+            queue.offerInt(i * 10);
+        }
+
+        PrimitiveIterator.OfInt iterator = queue.iterator();
+        assertThat(iterator.nextInt(), is(20));
+        iterator.remove();
+        assertThat(iterator.nextInt(), is(30));
+
+        assertThat(queue, contains(30, 40));
+    }
+
+    @Test
+    public void concurrentRemoveByPrimitiveIterator() {
+        ConcurrentMostRecentlyInsertedDoubleQueue queue = new ConcurrentMostRecentlyInsertedDoubleQueue(3);
+        for (int i = 1; i <= 4; i++) {
+            queue.offerDouble(i * 0.5);
+        }
+
+        PrimitiveIterator.OfDouble iterator = queue.iterator();
+        assertThat(iterator.nextDouble(), is(1.0));
+        iterator.remove();
+        assertThat(iterator.nextDouble(), is(1.5));
+        assertThat(iterator.nextDouble(), is(2.0));
+        assertThat(iterator.hasNext(), is(false));
+
+        assertThat(queue, contains(1.5, 2.0));
+    }
+
+    @Test
+    public void doubleQueueContainsNaN() {
+        MostRecentlyInsertedDoubleQueue queue = new MostRecentlyInsertedDoubleQueue(2, Double.NaN);
+        queue.offerDouble(Double.NaN);
+
+        assertThat(queue.contains(Double.NaN), is(true));
+        assertThat(queue.pollDouble(), is(Double.NaN));
+        assertThat(queue.pollDouble(), is(Double.NaN));
+        assertThat(queue, is(empty()));
+    }
+}
@@ -6,6 +6,9 @@ import java.util.*;
 
 import static com.bvan.mriqueue.QueueTestUtils.offerAll;
 import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
 
 /**
  * @author bvanchuhov
@@ -35,4 +38,42 @@ public class MostRecentlyInsertedQueueIterationTest {
 
         Integer elem = iterator.next();
     }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void offeringDuringSpliteratorTraversalIsForbidden() {
+        Queue<Integer> queue = new MostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20));
+
+        Spliterator<Integer> spliterator = queue.spliterator();
+        spliterator.tryAdvance(queue::offer);
+
+        spliterator.tryAdvance(elem -> {
+        });
+    }
+
+    @Test
+    public void removingByIteratorKeepsIterationOrder() {
+        Queue<Integer> queue = new MostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20, 30, 40));
+
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertThat(iterator.next(), is(30));
+        assertThat(iterator.next(), is(40));
+        assertThat(iterator.hasNext(), is(false));
+        assertThat(queue, contains(30, 40));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removingByIteratorTwiceIsForbidden() {
+        Queue<Integer> queue = new MostRecentlyInsertedQueue<>(3);
+        offerAll(queue, asList(10, 20));
+
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+        iterator.remove();
+    }
 }
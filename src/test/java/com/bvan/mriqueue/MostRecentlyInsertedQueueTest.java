@@ -7,6 +7,8 @@ import org.junit.runners.Parameterized.Parameters;
 
 import java.util.*;
 
+import static com.bvan.mriqueue.QueueTestUtils.createPersistentQueue;
+import static com.bvan.mriqueue.QueueTestUtils.intCodec;
 import static com.bvan.mriqueue.QueueTestUtils.offerAll;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.*;
@@ -34,6 +36,14 @@ public class MostRecentlyInsertedQueueTest {
                 {
                         "MostRecentlyInsertedBlockingQueue",
                         (MRIQueueFactory) (capacity) -> new MostRecentlyInsertedBlockingQueue(capacity)
+                },
+                {
+                        "OffHeapMostRecentlyInsertedQueue",
+                        (MRIQueueFactory) (capacity) -> new OffHeapMostRecentlyInsertedQueue<>(capacity, 1024, intCodec())
+                },
+                {
+                        "PersistentMostRecentlyInsertedBlockingQueue",
+                        (MRIQueueFactory) (capacity) -> createPersistentQueue(capacity, intCodec())
                 }
         });
     }
@@ -98,6 +108,30 @@ public class MostRecentlyInsertedQueueTest {
         assertThat(queue.poll(), is(nullValue()));
     }
 
+    @Test
+    public void offerAndPollAfterWrapAround() {
+        Queue<Integer> queue = createQueue(3);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue.poll(), is(30));
+        queue.offer(60);
+        queue.offer(70);
+
+        assertThat(queue, contains(50, 60, 70));
+        assertThat(queue.peek(), is(50));
+    }
+
+    @Test
+    public void removeAfterWrapAround() {
+        Queue<Integer> queue = createQueue(3);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue.remove(40), is(true));
+        queue.offer(60);
+
+        assertThat(queue, contains(30, 50, 60));
+    }
+
     @Test
     public void pollFromEmptyQueueShouldReturnNull() {
         Queue<Integer> queue = createQueue(3);
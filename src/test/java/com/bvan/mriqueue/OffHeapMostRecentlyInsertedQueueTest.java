@@ -0,0 +1,103 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class OffHeapMostRecentlyInsertedQueueTest {
+
+    private static final Codec<String> STRING_CODEC = new Codec<String>() {
+        @Override
+        public int encodedLength(String e) {
+            return e.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void encode(String e, ByteBuffer dst) {
+            dst.put(e.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String decode(ByteBuffer src) {
+            return StandardCharsets.UTF_8.decode(src).toString();
+        }
+    };
+
+    @Test
+    public void offerRecordsGreaterThanArena() {
+        // each record takes 4 bytes of header and 8 bytes of payload
+        Queue<String> queue = new OffHeapMostRecentlyInsertedQueue<>(10, 40, STRING_CODEC);
+        offerAll(queue, asList("aaaaaaaa", "bbbbbbbb", "cccccccc", "dddddddd"));
+
+        assertThat(queue, contains("bbbbbbbb", "cccccccc", "dddddddd"));
+        assertThat(queue, hasSize(3));
+    }
+
+    @Test
+    public void offerRecordsOfDifferentLengthWrappingArena() {
+        Queue<String> queue = new OffHeapMostRecentlyInsertedQueue<>(10, 40, STRING_CODEC);
+        offerAll(queue, asList("aaaaaaaaaaaa", "bb", "cccccccc"));
+
+        queue.offer("dddddddddddd");
+
+        assertThat(queue, contains("bb", "cccccccc", "dddddddddddd"));
+        assertThat(queue.poll(), is("bb"));
+        queue.offer("e");
+        assertThat(queue, contains("cccccccc", "dddddddddddd", "e"));
+    }
+
+    @Test
+    public void pollRawPassesRecordBytes() {
+        OffHeapMostRecentlyInsertedQueue<byte[]> queue = new OffHeapMostRecentlyInsertedQueue<>(3, 64, Codec.byteArray());
+        queue.offer(new byte[]{1, 2, 3});
+        queue.offer(new byte[]{4, 5});
+
+        List<Integer> remaining = new ArrayList<>();
+        assertThat(queue.pollRaw(buffer -> remaining.add(buffer.remaining())), is(true));
+        assertThat(queue.peekRaw(buffer -> remaining.add((int) buffer.get(buffer.position()))), is(true));
+
+        assertThat(remaining, contains(3, 4));
+        assertThat(queue, hasSize(1));
+    }
+
+    @Test
+    public void pollRawFromEmptyQueueReturnsFalse() {
+        OffHeapMostRecentlyInsertedQueue<byte[]> queue = new OffHeapMostRecentlyInsertedQueue<>(3, 64, Codec.byteArray());
+
+        assertThat(queue.pollRaw(buffer -> {}), is(false));
+    }
+
+    @Test
+    public void removedRecordsAreSkipped() {
+        Queue<String> queue = new OffHeapMostRecentlyInsertedQueue<>(3, 64, STRING_CODEC);
+        offerAll(queue, asList("a", "b", "c"));
+
+        assertThat(queue.remove("a"), is(true));
+        Iterator<String> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+        queue.offer("d");
+
+        assertThat(queue, contains("c", "d"));
+        assertThat(queue.poll(), is("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordGreaterThanArenaIsForbidden() {
+        Queue<String> queue = new OffHeapMostRecentlyInsertedQueue<>(3, 8, STRING_CODEC);
+        queue.offer("aaaaaaaa");
+    }
+}
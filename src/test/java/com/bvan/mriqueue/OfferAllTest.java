@@ -0,0 +1,113 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class OfferAllTest {
+
+    private final BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "MostRecentlyInsertedQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) MostRecentlyInsertedQueue::new
+                },
+                {
+                        "ConcurrentMostRecentlyInsertedQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) ConcurrentMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MostRecentlyInsertedBlockingQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) MostRecentlyInsertedBlockingQueue::new
+                }
+        });
+    }
+
+    public OfferAllTest(String name, BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void offerAllNotGreaterThanCapacity() {
+        Queue<Integer> queue = queueFactory.apply(5, null);
+        queue.offer(10);
+
+        assertThat(offerAllArray(queue, 20, 30), is(true));
+
+        assertThat(queue, contains(10, 20, 30));
+        assertThat(queue, hasSize(3));
+    }
+
+    @Test
+    public void offerAllEvictsOverflowFromHead() {
+        List<Integer> evicted = new ArrayList<>();
+        Queue<Integer> queue = queueFactory.apply(4, evicted::add);
+        offerAll(queue, asList(10, 20, 30));
+
+        offerAllArray(queue, 40, 50, 60);
+
+        assertThat(queue, contains(30, 40, 50, 60));
+        assertThat(evicted, contains(10, 20));
+    }
+
+    @Test
+    public void offerAllGreaterThanCapacitySkipsLeadingElems() {
+        List<Integer> evicted = new ArrayList<>();
+        Queue<Integer> queue = queueFactory.apply(3, evicted::add);
+        offerAll(queue, asList(10, 20));
+
+        queue.addAll(asList(null, 30, 40, 50, 60));
+
+        assertThat(queue, contains(40, 50, 60));
+        assertThat(queue.poll(), is(40));
+        assertThat(evicted, contains(10, 20));
+    }
+
+    @Test
+    public void offerAllWithNullDoesNotChangeQueue() {
+        Queue<Integer> queue = queueFactory.apply(3, null);
+        queue.offer(10);
+
+        try {
+            offerAllArray(queue, 20, null);
+        } catch (NullPointerException expected) {
+            // queue should stay the same
+        }
+
+        assertThat(queue, contains(10));
+    }
+
+    @Test
+    public void offerEmptyArray() {
+        Queue<Integer> queue = queueFactory.apply(3, null);
+
+        assertThat(offerAllArray(queue), is(false));
+        assertThat(queue, is(empty()));
+    }
+
+    private static boolean offerAllArray(Queue<Integer> queue, Integer... elems) {
+        if (queue instanceof MostRecentlyInsertedQueue) {
+            return ((MostRecentlyInsertedQueue<Integer>) queue).offerAll(elems);
+        }
+        if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            return ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).offerAll(elems);
+        }
+        return ((MostRecentlyInsertedBlockingQueue<Integer>) queue).offerAll(elems);
+    }
+}
@@ -0,0 +1,208 @@
+package com.bvan.mriqueue;
+
+import com.bvan.mriqueue.PersistentMostRecentlyInsertedBlockingQueue.Durability;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.bvan.mriqueue.QueueTestUtils.intCodec;
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+/**
+ * @author bvanchuhov
+ */
+public class PersistentMostRecentlyInsertedBlockingQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenedQueueKeepsContents() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.perBatch())) {
+            offerAll(queue, asList(10, 20, 30, 40));
+            queue.poll();
+        }
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none())) {
+            assertThat(queue, contains(30, 40));
+            queue.offer(50);
+            queue.offer(60);
+            assertThat(queue, contains(40, 50, 60));
+        }
+    }
+
+    @Test
+    public void reopenedQueueKeepsRemovals() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue =
+                     open(file, Durability.periodic(1, TimeUnit.SECONDS))) {
+            offerAll(queue, asList(10, 20, 30));
+            queue.remove(20);
+            queue.drainTo(new ArrayList<>(), 1);
+        }
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none())) {
+            assertThat(queue, contains(30));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void reopeningWithAnotherCapacityIsForbidden() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        open(file, Durability.none()).close();
+
+        new PersistentMostRecentlyInsertedBlockingQueue<>(file, 4, 4, intCodec(), Durability.none());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void elementLongerThanSlotIsForbidden() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<byte[]> queue =
+                     new PersistentMostRecentlyInsertedBlockingQueue<>(file, 3, 4, Codec.byteArray(), Durability.none())) {
+            queue.offer(new byte[5]);
+        }
+    }
+
+    @Test
+    public void takeWaitsForPut() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none())) {
+            List<Integer> taken = new ArrayList<>();
+            Thread takingThread = new Thread(() -> {
+                try {
+                    taken.add(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            takingThread.start();
+
+            queue.put(10);
+            takingThread.join(TimeUnit.SECONDS.toMillis(2));
+
+            assertThat(taken, contains(10));
+        }
+    }
+
+    @Test
+    public void reopenedQueueKeepsOfferedBatch() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.perBatch())) {
+            queue.offer(10);
+            assertThat(queue.offerAll(asList(20, 30, 40, 50)), is(true));
+            assertThat(queue.offerAll(Collections.emptyList()), is(false));
+        }
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none())) {
+            assertThat(queue, contains(30, 40, 50));
+        }
+    }
+
+    @Test
+    public void batchWithTooLongElementIsNotOffered() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<byte[]> queue =
+                     new PersistentMostRecentlyInsertedBlockingQueue<>(file, 3, 4, Codec.byteArray(), Durability.none())) {
+            try {
+                queue.offerAll(asList(new byte[1], new byte[5]));
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertThat(queue, is(empty()));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void openingOfLockedFileIsForbidden() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none())) {
+            open(file, Durability.none());
+        }
+    }
+
+    @Test
+    public void closedQueueReleasesLock() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        open(file, Durability.none()).close();
+
+        try (PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none())) {
+            assertThat(queue, is(empty()));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void offerToClosedQueueIsForbidden() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.perBatch());
+        queue.close();
+
+        queue.offer(10);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void pollOfClosedQueueIsForbidden() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.perBatch());
+        queue.close();
+        queue.close();
+
+        queue.poll();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iterationOfClosedQueueIsForbidden() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none());
+        queue.offer(10);
+        queue.close();
+
+        queue.iterator();
+    }
+
+    @Test
+    public void closeAwakesTakingThread() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        PersistentMostRecentlyInsertedBlockingQueue<Integer> queue = open(file, Durability.none());
+
+        List<Exception> failures = new ArrayList<>();
+        Thread takingThread = new Thread(() -> {
+            try {
+                queue.take();
+            } catch (IllegalStateException | InterruptedException e) {
+                failures.add(e);
+            }
+        });
+        takingThread.start();
+        while (takingThread.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+
+        queue.close();
+        takingThread.join(TimeUnit.SECONDS.toMillis(2));
+
+        assertThat(failures, contains(instanceOf(IllegalStateException.class)));
+    }
+
+    private PersistentMostRecentlyInsertedBlockingQueue<Integer> open(Path file, Durability durability) throws IOException {
+        return new PersistentMostRecentlyInsertedBlockingQueue<>(file, 3, 4, intCodec(), durability);
+    }
+}
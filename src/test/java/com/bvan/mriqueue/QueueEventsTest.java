@@ -0,0 +1,121 @@
+package com.bvan.mriqueue;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class QueueEventsTest {
+
+    private Recording recording;
+
+    @Before
+    public void setUp() {
+        recording = new Recording();
+        recording.enable(LockWaitEvent.class).withThreshold(Duration.ZERO);
+        recording.enable(BlockedTakeEvent.class).withThreshold(Duration.ZERO);
+        recording.enable(EvictionsEvent.class);
+        recording.start();
+    }
+
+    @After
+    public void tearDown() {
+        recording.close();
+    }
+
+    @Test
+    public void blockedPollIsRecorded() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+
+        queue.poll(20, TimeUnit.MILLISECONDS);
+
+        List<RecordedEvent> events = recordedEvents("com.bvan.mriqueue.BlockedTake");
+        assertThat(events, hasSize(1));
+        RecordedEvent event = events.get(0);
+        assertThat(event.getString("operation"), is("poll"));
+        assertThat(event.getInt("queueId"), is(System.identityHashCode(queue)));
+        assertThat(event.getClass("queueClass").getName(), is(MostRecentlyInsertedBlockingQueue.class.getName()));
+        assertThat(event.getDuration(), is(greaterThanOrEqualTo(Duration.ofMillis(20))));
+    }
+
+    @Test
+    public void blockedTakeIsRecorded() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        CountDownLatch taking = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            taking.countDown();
+            try {
+                queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        taking.await();
+
+        while (consumer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        queue.offer(10);
+        consumer.join();
+
+        List<RecordedEvent> events = recordedEvents("com.bvan.mriqueue.BlockedTake");
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getString("operation"), is("take"));
+    }
+
+    @Test
+    public void uncontendedOperationsAreNotRecorded() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(3);
+        queue.offer(10);
+        queue.take();
+
+        assertThat(recordedEvents("com.bvan.mriqueue.LockWait"), is(empty()));
+        assertThat(recordedEvents("com.bvan.mriqueue.BlockedTake"), is(empty()));
+    }
+
+    @Test
+    public void evictionsAreSummedPerPeriod() throws Exception {
+        QueueEvents periodic = new JfrQueueEvents(this, TimeUnit.HOURS.toNanos(1));
+        periodic.evicted(5);
+        QueueEvents immediate = new JfrQueueEvents(this, 0);
+        immediate.evicted(3);
+        immediate.evicted(2);
+
+        List<RecordedEvent> events = recordedEvents("com.bvan.mriqueue.Evictions");
+        assertThat(events.stream().map(e -> e.getLong("evictedCount")).collect(Collectors.toList()), contains(3L, 2L));
+    }
+
+    private List<RecordedEvent> recordedEvents(String name) throws IOException {
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Path file = Files.createTempFile("mri-queue", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals(name))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class QueueMetricsTest {
+
+    private final MeteredQueueFactory queueFactory;
+
+    private final QueueMetrics metrics = new QueueMetrics();
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {"MostRecentlyInsertedQueue", (MeteredQueueFactory) MostRecentlyInsertedQueue::new},
+                {"ConcurrentMostRecentlyInsertedQueue", (MeteredQueueFactory) ConcurrentMostRecentlyInsertedQueue::new},
+                {"MostRecentlyInsertedBlockingQueue", (MeteredQueueFactory) MostRecentlyInsertedBlockingQueue::new}
+        });
+    }
+
+    public QueueMetricsTest(String name, MeteredQueueFactory queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void offersPollsAndEvictionsAreCounted() {
+        Queue<Integer> queue = queueFactory.create(3, null, metrics);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+        queue.poll();
+        queue.poll();
+
+        QueueMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.offerCount(), is(5L));
+        assertThat(snapshot.evictionCount(), is(2L));
+        assertThat(snapshot.pollCount(), is(2L));
+        assertThat(snapshot.peakSize(), is(3L));
+    }
+
+    @Test
+    public void pollOfEmptyQueueIsNotCounted() {
+        Queue<Integer> queue = queueFactory.create(3, null, metrics);
+        queue.poll();
+
+        assertThat(metrics.getPollCount(), is(0L));
+    }
+
+    @Test
+    public void elemsSkippedByOfferAllAreNotCounted() {
+        List<Integer> evicted = new ArrayList<>();
+        Queue<Integer> queue = queueFactory.create(2, evicted::add, metrics);
+        queue.addAll(asList(10, 20, 30));
+        queue.offer(40);
+
+        assertThat(evicted, contains(20));
+        assertThat(metrics.getEvictionCount(), is(1L));
+        assertThat(metrics.getOfferCount(), is(3L));
+        assertThat(metrics.getPeakSize(), is(2L));
+    }
+
+    @Test
+    public void resetClearsCounters() {
+        Queue<Integer> queue = queueFactory.create(3, null, metrics);
+        offerAll(queue, asList(10, 20));
+
+        metrics.reset();
+
+        assertThat(metrics.getOfferCount(), is(0L));
+        assertThat(metrics.getPeakSize(), is(0L));
+    }
+
+    @Test
+    public void metricsAreExposedByMBean() throws Exception {
+        Queue<Integer> queue = queueFactory.create(3, null, metrics);
+        offerAll(queue, asList(10, 20, 30, 40));
+
+        ObjectName name = metrics.register("test-" + System.identityHashCode(metrics));
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(name, "OfferCount"), is(4L));
+            assertThat(server.getAttribute(name, "EvictionCount"), is(1L));
+            assertThat(server.getAttribute(name, "PeakSize"), is(3L));
+        } finally {
+            QueueMetrics.unregister(name);
+        }
+    }
+
+    @Test
+    public void blockedTakeIsTimed() throws Exception {
+        Queue<Integer> queue = queueFactory.create(3, null, metrics);
+        if (!(queue instanceof MostRecentlyInsertedBlockingQueue)) {
+            return;
+        }
+        MostRecentlyInsertedBlockingQueue<Integer> blockingQueue = (MostRecentlyInsertedBlockingQueue<Integer>) queue;
+
+        assertThat(blockingQueue.poll(20, TimeUnit.MILLISECONDS), is(nullValue()));
+
+        assertThat(metrics.getTakeBlockedNanos(), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20))));
+        assertThat(metrics.getPollCount(), is(0L));
+    }
+
+    @FunctionalInterface
+    interface MeteredQueueFactory {
+        Queue<Integer> create(int capacity, EvictionListener<Integer> evictionListener, QueueMetrics metrics);
+    }
+}
@@ -1,5 +1,10 @@
 package com.bvan.mriqueue;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Queue;
 
 /**
@@ -14,4 +19,35 @@ public class QueueTestUtils {
             queue.offer(elem);
         }
     }
+
+    public static Codec<Integer> intCodec() {
+        return new Codec<Integer>() {
+            @Override
+            public int encodedLength(Integer e) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void encode(Integer e, ByteBuffer dst) {
+                dst.putInt(e);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer src) {
+                return src.getInt();
+            }
+        };
+    }
+
+    public static <E> PersistentMostRecentlyInsertedBlockingQueue<E> createPersistentQueue(int capacity, Codec<E> codec) {
+        try {
+            Path file = Files.createTempFile("mri-queue", ".dat");
+            file.toFile().deleteOnExit();
+            Files.delete(file);
+            return new PersistentMostRecentlyInsertedBlockingQueue<>(file, capacity, 16, codec,
+                    PersistentMostRecentlyInsertedBlockingQueue.Durability.none());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,186 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class SequencedMostRecentlyInsertedQueueTest {
+
+    private final Function<Integer, Queue<Integer>> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "SpscMostRecentlyInsertedQueue",
+                        (Function<Integer, Queue<Integer>>) SpscMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MpscMostRecentlyInsertedQueue",
+                        (Function<Integer, Queue<Integer>>) MpscMostRecentlyInsertedQueue::new
+                }
+        });
+    }
+
+    public SequencedMostRecentlyInsertedQueueTest(String name, Function<Integer, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void offerElemsGreaterThanCapacity() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue, contains(30, 40, 50));
+        assertThat(queue, hasSize(3));
+    }
+
+    @Test
+    public void lastKCopiesMostRecentElems() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+        queue.poll();
+
+        Integer[] dst = new Integer[4];
+
+        assertThat(((AbstractSequencedMostRecentlyInsertedQueue<Integer>) queue).lastK(4, dst), is(2));
+        assertThat(asList(dst), contains(40, 50, null, null));
+        assertThat(((AbstractSequencedMostRecentlyInsertedQueue<Integer>) queue).lastK(1, dst), is(1));
+        assertThat(dst[0], is(50));
+    }
+
+    @Test
+    public void consumerSkipsLappedElems() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20));
+        assertThat(queue.poll(), is(10));
+
+        offerAll(queue, asList(30, 40, 50, 60, 70, 80, 90));
+
+        assertThat(queue.peek(), is(70));
+        assertThat(queue.poll(), is(70));
+        assertThat(queue.poll(), is(80));
+        assertThat(queue.poll(), is(90));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(queue, is(empty()));
+    }
+
+    @Test
+    public void offerAndClear() {
+        Queue<Integer> queue = queueFactory.apply(1);
+        offerAll(queue, asList(10, 20));
+
+        queue.clear();
+
+        assertThat(queue, is(empty()));
+        queue.offer(30);
+        assertThat(queue, contains(30));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void removeIsNotSupported() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20));
+
+        queue.iterator().remove();
+    }
+
+    @Test
+    public void consumerSeesElemsOfProducerInOrder() throws InterruptedException {
+        Queue<Integer> queue = queueFactory.apply(64);
+        int elemsCount = 1_000_000;
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < elemsCount; i++) {
+                queue.offer(i);
+            }
+        });
+        producer.start();
+
+        List<Integer> polled = new ArrayList<>();
+        while (producer.isAlive() || !queue.isEmpty()) {
+            Integer elem = queue.poll();
+            if (elem != null) {
+                polled.add(elem);
+            }
+        }
+        producer.join();
+
+        for (int i = 1; i < polled.size(); i++) {
+            assertThat(polled.get(i), is(greaterThan(polled.get(i - 1))));
+        }
+        assertThat(polled.get(polled.size() - 1), is(elemsCount - 1));
+    }
+
+    @Test
+    public void lastKCopiesElemsOfTheirSequencesWhileProducerLapsConsumer() throws InterruptedException {
+        AbstractSequencedMostRecentlyInsertedQueue<Integer> queue =
+                (AbstractSequencedMostRecentlyInsertedQueue<Integer>) queueFactory.apply(4);
+        int elemsCount = 1_000_000;
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < elemsCount; i++) {
+                queue.offer(i);
+                if ((i & 3) == 0) {
+                    queue.poll();
+                }
+            }
+        });
+        producer.start();
+
+        Integer[] dst = new Integer[4];
+        while (producer.isAlive()) {
+            int n = queue.lastK(dst.length, dst);
+            for (int i = 1; i < n; i++) {
+                assertThat(dst[i], is(greaterThan(dst[i - 1])));
+            }
+        }
+        producer.join();
+    }
+
+    @Test
+    public void consumerSeesElemsOfEveryProducerInOrder() throws InterruptedException {
+        Queue<Integer> queue = new MpscMostRecentlyInsertedQueue<>(64);
+        int producersCount = 4;
+        int elemsPerProducer = 200_000;
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producersCount; p++) {
+            int offset = p * elemsPerProducer;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    queue.offer(offset + i);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        int[] lastPolled = new int[producersCount];
+        Arrays.fill(lastPolled, -1);
+        while (producers.stream().anyMatch(Thread::isAlive) || !queue.isEmpty()) {
+            Integer elem = queue.poll();
+            if (elem != null) {
+                int producer = elem / elemsPerProducer;
+                assertThat(elem, is(greaterThan(lastPolled[producer])));
+                lastPolled[producer] = elem;
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+    }
+}
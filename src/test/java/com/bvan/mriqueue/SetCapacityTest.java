@@ -0,0 +1,139 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class SetCapacityTest {
+
+    private final BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>> queueFactory;
+
+    private final List<Integer> evicted = new CopyOnWriteArrayList<>();
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "MostRecentlyInsertedQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) MostRecentlyInsertedQueue::new
+                },
+                {
+                        "ConcurrentMostRecentlyInsertedQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) ConcurrentMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MostRecentlyInsertedBlockingQueue",
+                        (BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>>) MostRecentlyInsertedBlockingQueue::new
+                }
+        });
+    }
+
+    public SetCapacityTest(String name, BiFunction<Integer, EvictionListener<Integer>, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void shrinkingEvictsOldestSurplus() {
+        Queue<Integer> queue = queueFactory.apply(5, evicted::add);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        setCapacity(queue, 2);
+
+        assertThat(evicted, contains(10, 20, 30));
+        assertThat(queue, contains(40, 50));
+
+        queue.offer(60);
+        assertThat(evicted, contains(10, 20, 30, 40));
+        assertThat(queue, contains(50, 60));
+    }
+
+    @Test
+    public void growingKeepsElemsAndEvictsLater() {
+        Queue<Integer> queue = queueFactory.apply(3, evicted::add);
+        offerAll(queue, asList(10, 20, 30, 40));
+
+        setCapacity(queue, 5);
+        offerAll(queue, asList(50, 60, 70));
+
+        assertThat(evicted, contains(10, 20));
+        assertThat(queue, contains(30, 40, 50, 60, 70));
+        assertThat(queue.poll(), is(30));
+    }
+
+    @Test
+    public void resizingWrappedRingKeepsOrder() {
+        Queue<Integer> queue = queueFactory.apply(4, evicted::add);
+        offerAll(queue, asList(10, 20, 30, 40, 50, 60));
+        queue.poll();
+
+        setCapacity(queue, 6);
+        offerAll(queue, asList(70, 80, 90));
+        assertThat(queue, contains(40, 50, 60, 70, 80, 90));
+
+        setCapacity(queue, 3);
+        assertThat(queue, contains(70, 80, 90));
+        assertThat(queue.size(), is(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveCapacityIsRejected() {
+        setCapacity(queueFactory.apply(3, null), 0);
+    }
+
+    @Test
+    public void resizingDoesNotStopProducers() throws InterruptedException {
+        Queue<Integer> queue = queueFactory.apply(64, evicted::add);
+        if (queue instanceof MostRecentlyInsertedQueue) {
+            return;
+        }
+
+        int offered = 100_000;
+        AtomicBoolean done = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < offered; i++) {
+                queue.offer(i);
+            }
+            done.set(true);
+        });
+        producer.start();
+
+        int polled = 0;
+        for (int capacity = 1; !done.get(); capacity = capacity % 128 + 1) {
+            setCapacity(queue, capacity);
+            if (queue.poll() != null) {
+                polled++;
+            }
+        }
+        producer.join();
+        setCapacity(queue, 16);
+
+        assertThat(queue.size(), is(lessThanOrEqualTo(16)));
+        assertThat(polled + evicted.size() + queue.size(), is(offered));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setCapacity(Queue<Integer> queue, int capacity) {
+        if (queue instanceof MostRecentlyInsertedQueue) {
+            ((MostRecentlyInsertedQueue<Integer>) queue).setCapacity(capacity);
+        } else if (queue instanceof ConcurrentMostRecentlyInsertedQueue) {
+            ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).setCapacity(capacity);
+        } else {
+            ((MostRecentlyInsertedBlockingQueue<Integer>) queue).setCapacity(capacity);
+        }
+    }
+}
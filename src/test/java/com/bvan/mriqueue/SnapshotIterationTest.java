@@ -0,0 +1,179 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.Function;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class SnapshotIterationTest {
+
+    private final Function<Integer, Queue<Integer>> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "ConcurrentMostRecentlyInsertedQueue",
+                        (Function<Integer, Queue<Integer>>) ConcurrentMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MostRecentlyInsertedBlockingQueue",
+                        (Function<Integer, Queue<Integer>>) MostRecentlyInsertedBlockingQueue::new
+                }
+        });
+    }
+
+    public SnapshotIterationTest(String name, Function<Integer, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void iteratorIsNotAffectedByOffer() {
+        Queue<Integer> queue = queueFactory.apply(4);
+        offerAll(queue, asList(10, 20, 30));
+
+        Iterator<Integer> iterator = queue.iterator();
+        assertThat(iterator.next(), is(10));
+
+        queue.offer(40);
+
+        assertThat(iterator.next(), is(20));
+        assertThat(iterator.next(), is(30));
+        assertThat(iterator.hasNext(), is(false));
+        assertThat(queue, contains(10, 20, 30, 40));
+    }
+
+    @Test
+    public void iteratorKeepsReadAheadElemAndSkipsTakenOnes() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30));
+
+        Iterator<Integer> iterator = queue.iterator();
+        assertThat(iterator.next(), is(10));
+
+        queue.poll();
+        offerAll(queue, asList(40, 50, 60));
+
+        assertThat(iterator.next(), is(20));
+        assertThat(iterator.hasNext(), is(false));
+        assertThat(queue, contains(40, 50, 60));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void takenElemsAreNotReachableFromQueue() {
+        Queue<Object> queue = (Queue<Object>) (Queue<?>) queueFactory.apply(3);
+        Object evicted = new byte[1 << 20];
+        Object polled = new byte[1 << 20];
+        WeakReference<Object> evictedRef = new WeakReference<>(evicted);
+        WeakReference<Object> polledRef = new WeakReference<>(polled);
+
+        queue.offer(evicted);
+        offerAll(queue, asList(1, 2, 3));
+        queue.offer(polled);
+        while (queue.size() > 1) {
+            queue.poll();
+        }
+        assertThat(queue.poll(), is(sameInstance(polled)));
+        evicted = polled = null;
+
+        for (int i = 0; i < 10 && (evictedRef.get() != null || polledRef.get() != null); i++) {
+            System.gc();
+        }
+        assertThat(evictedRef.get(), is(nullValue()));
+        assertThat(polledRef.get(), is(nullValue()));
+    }
+
+    @Test
+    public void streamToArrayWhileElemsAreTaken() throws InterruptedException {
+        int capacity = 100_000;
+        Queue<Integer> queue = queueFactory.apply(capacity);
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(i);
+        }
+        Thread pollingThread = new Thread(() -> {
+            for (int i = 0; i < capacity; i++) {
+                queue.offer(queue.poll());
+            }
+        });
+        pollingThread.start();
+
+        while (pollingThread.isAlive()) {
+            Object[] elems = queue.stream().toArray();
+            assertThat(elems.length, is(lessThanOrEqualTo(capacity)));
+        }
+        pollingThread.join();
+    }
+
+    @Test
+    public void iteratorIsNotAffectedByRemove() {
+        Queue<Integer> queue = queueFactory.apply(4);
+        offerAll(queue, asList(10, 20, 30, 40));
+
+        Iterator<Integer> iterator = queue.iterator();
+        assertThat(iterator.next(), is(10));
+
+        assertThat(queue.remove(30), is(true));
+        assertThat(queue.remove(10), is(true));
+
+        assertThat(iterator.next(), is(20));
+        assertThat(iterator.next(), is(30));
+        assertThat(iterator.next(), is(40));
+        assertThat(iterator.hasNext(), is(false));
+        assertThat(queue, contains(20, 40));
+    }
+
+    @Test
+    public void removeLastAndOffer() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(queue.remove(30), is(true));
+        queue.offer(40);
+
+        assertThat(queue, contains(10, 20, 40));
+        assertThat(queue.toString(), is("[10, 20, 40]"));
+    }
+
+    @Test
+    public void removingByIterator() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30));
+
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+
+        assertThat(iterator.next(), is(30));
+        assertThat(queue, contains(10, 30));
+    }
+
+    @Test
+    public void snapshotViewsAfterClear() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20));
+
+        Object[] before = queue.toArray();
+        queue.clear();
+        queue.offer(30);
+
+        assertThat(before, arrayContaining(10, 20));
+        assertThat(queue.toArray(new Integer[0]), arrayContaining(30));
+        assertThat(queue.contains(10), is(false));
+        assertThat(queue.contains(30), is(true));
+    }
+}
@@ -0,0 +1,136 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class SpliteratorTest {
+
+    private final Function<Integer, Queue<Integer>> queueFactory;
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {
+                        "MostRecentlyInsertedQueue",
+                        (Function<Integer, Queue<Integer>>) MostRecentlyInsertedQueue::new
+                },
+                {
+                        "ConcurrentMostRecentlyInsertedQueue",
+                        (Function<Integer, Queue<Integer>>) ConcurrentMostRecentlyInsertedQueue::new
+                },
+                {
+                        "MostRecentlyInsertedBlockingQueue",
+                        (Function<Integer, Queue<Integer>>) MostRecentlyInsertedBlockingQueue::new
+                }
+        });
+    }
+
+    public SpliteratorTest(String name, Function<Integer, Queue<Integer>> queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void spliteratorEstimatesSize() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30, 40));
+
+        Spliterator<Integer> spliterator = queue.spliterator();
+
+        assertThat(spliterator.hasCharacteristics(Spliterator.ORDERED), is(true));
+        assertThat(spliterator.estimateSize(), is(3L));
+    }
+
+    @Test
+    public void spliteratorOfNotConcurrentQueueIsSized() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30, 40));
+
+        Spliterator<Integer> spliterator = queue.spliterator();
+
+        // concurrent queues skip elements taken during traversal, so their size isn't exact
+        boolean sized = queue instanceof MostRecentlyInsertedQueue;
+        assertThat(spliterator.hasCharacteristics(Spliterator.SIZED), is(sized));
+        assertThat(spliterator.hasCharacteristics(Spliterator.SUBSIZED), is(sized));
+    }
+
+    @Test
+    public void splitIntoContiguousRanges() {
+        Queue<Integer> queue = queueFactory.apply(5);
+        offerAll(queue, asList(10, 20, 30, 40, 50, 60, 70));
+
+        Spliterator<Integer> suffix = queue.spliterator();
+        Spliterator<Integer> prefix = suffix.trySplit();
+
+        assertThat(prefix.estimateSize(), is(2L));
+        assertThat(suffix.estimateSize(), is(3L));
+        assertThat(elems(prefix), contains(30, 40));
+        assertThat(elems(suffix), contains(50, 60, 70));
+    }
+
+    @Test
+    public void singleElementIsNotSplit() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        queue.offer(10);
+
+        Spliterator<Integer> spliterator = queue.spliterator();
+
+        assertThat(spliterator.trySplit(), is(nullValue()));
+        assertThat(elems(spliterator), contains(10));
+    }
+
+    @Test
+    public void tryAdvanceAndForEachRemaining() {
+        Queue<Integer> queue = queueFactory.apply(3);
+        offerAll(queue, asList(10, 20, 30));
+        List<Integer> elems = new ArrayList<>();
+
+        Spliterator<Integer> spliterator = queue.spliterator();
+        assertThat(spliterator.tryAdvance(elems::add), is(true));
+        spliterator.forEachRemaining(elems::add);
+
+        assertThat(elems, contains(10, 20, 30));
+        assertThat(spliterator.tryAdvance(elems::add), is(false));
+        assertThat(spliterator.estimateSize(), is(0L));
+    }
+
+    @Test
+    public void parallelStreamKeepsOrder() {
+        int capacity = 100_000;
+        Queue<Integer> queue = queueFactory.apply(capacity);
+        IntStream.range(0, capacity + capacity / 2).forEach(queue::offer);
+
+        List<Integer> elems = queue.parallelStream().collect(Collectors.toList());
+        long sum = queue.parallelStream().mapToLong(Integer::longValue).sum();
+
+        assertThat(elems, hasSize(capacity));
+        assertThat(elems.get(0), is(capacity / 2));
+        assertThat(elems.get(capacity - 1), is(capacity + capacity / 2 - 1));
+        assertThat(sum, is(sumOfRange(capacity / 2, capacity + capacity / 2)));
+    }
+
+    private static long sumOfRange(long from, long to) {
+        return (from + to - 1) * (to - from) / 2;
+    }
+
+    private static List<Integer> elems(Spliterator<Integer> spliterator) {
+        List<Integer> elems = new ArrayList<>();
+        spliterator.forEachRemaining(elems::add);
+        return elems;
+    }
+}
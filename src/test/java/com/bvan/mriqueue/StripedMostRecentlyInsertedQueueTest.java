@@ -0,0 +1,130 @@
+package com.bvan.mriqueue;
+
+import com.bvan.mriqueue.StripedMostRecentlyInsertedQueue.Recency;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+public class StripedMostRecentlyInsertedQueueTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stripesGreaterThanCapacity() {
+        new StripedMostRecentlyInsertedQueue<Integer>(2, 3, Recency.ORDERED);
+    }
+
+    @Test
+    public void oneThreadFillsOnlyItsStripe() {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(4, 2, Recency.ORDERED);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue, contains(40, 50));
+    }
+
+    @Test
+    public void offerFromOneThreadKeepsOrder() {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(3, 1, Recency.ORDERED);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue, contains(30, 40, 50));
+        assertThat(queue.peek(), is(30));
+        assertThat(queue.poll(), is(30));
+        assertThat(queue.poll(), is(40));
+        assertThat(queue.poll(), is(50));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void offersFromManyThreadsAreMergedInInsertionOrder() throws InterruptedException {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(8, 4, Recency.ORDERED);
+        for (int i = 1; i <= 8; i++) {
+            int elem = i * 10;
+            Thread thread = new Thread(() -> queue.offer(elem));
+            thread.start();
+            thread.join();
+        }
+
+        List<Integer> polled = new ArrayList<>();
+        Integer elem;
+        while ((elem = queue.poll()) != null) {
+            polled.add(elem);
+        }
+        assertThat(polled, contains(10, 20, 30, 40, 50, 60, 70, 80));
+    }
+
+    @Test
+    public void approximateRecencyKeepsOrderOfOneStripe() {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(4, 1, Recency.APPROXIMATE);
+        offerAll(queue, asList(10, 20, 30, 40, 50));
+
+        assertThat(queue, contains(20, 30, 40, 50));
+        assertThat(queue.toArray(), arrayContaining(20, 30, 40, 50));
+    }
+
+    @Test
+    public void removeByIterator() {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(3, 1, Recency.ORDERED);
+        offerAll(queue, asList(10, 20, 30));
+
+        assertThat(queue.remove(20), is(true));
+        queue.offer(40);
+
+        assertThat(queue, contains(10, 30, 40));
+        assertThat(queue, hasSize(3));
+    }
+
+    @Test
+    public void clear() {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(4, 2, Recency.ORDERED);
+        offerAll(queue, asList(10, 20, 30));
+
+        queue.clear();
+
+        assertThat(queue, is(empty()));
+        assertThat(queue.peek(), is(nullValue()));
+    }
+
+    @Test
+    public void offerAndPollAtMultithreading() throws InterruptedException {
+        StripedMostRecentlyInsertedQueue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(64, 4, Recency.ORDERED);
+        List<Integer> polled = Collections.synchronizedList(new ArrayList<>());
+
+        int producersCount = 4;
+        int elemsPerProducer = 50_000;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(producersCount + 1);
+        for (int p = 0; p < producersCount; p++) {
+            int offset = p * elemsPerProducer;
+            executorService.submit(() -> {
+                for (int i = 0; i < elemsPerProducer; i++) {
+                    queue.offer(offset + i);
+                }
+            });
+        }
+        executorService.submit(() -> {
+            for (int i = 0; i < elemsPerProducer; i++) {
+                Integer elem = queue.poll();
+                if (elem != null) {
+                    polled.add(elem);
+                }
+            }
+        });
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        List<Integer> all = new ArrayList<>(polled);
+        all.addAll(queue);
+        assertThat(new HashSet<>(all), hasSize(all.size()));
+        assertThat(queue.size(), is(lessThanOrEqualTo(64)));
+    }
+}
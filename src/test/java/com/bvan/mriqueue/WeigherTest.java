@@ -0,0 +1,161 @@
+package com.bvan.mriqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.bvan.mriqueue.QueueTestUtils.offerAll;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author bvanchuhov
+ */
+@RunWith(value = Parameterized.class)
+public class WeigherTest {
+
+    private final WeighedQueueFactory queueFactory;
+
+    private final List<String> evicted = new ArrayList<>();
+
+    @Parameters(name = "{index} : {0}")
+    public static Collection data() {
+        return Arrays.asList(new Object[][]{
+                {"ConcurrentMostRecentlyInsertedQueue", (WeighedQueueFactory) ConcurrentMostRecentlyInsertedQueue::new},
+                {"MostRecentlyInsertedBlockingQueue", (WeighedQueueFactory) MostRecentlyInsertedBlockingQueue::new}
+        });
+    }
+
+    public WeigherTest(String name, WeighedQueueFactory queueFactory) {
+        this.queueFactory = queueFactory;
+    }
+
+    @Test
+    public void headIsEvictedWhileTotalWeightExceedsMaxWeight() {
+        Queue<String> queue = createQueue(10);
+        offerAll(queue, asList("aaa", "bbb", "ccc"));
+
+        queue.offer("dddddd");
+
+        assertThat(evicted, contains("aaa", "bbb"));
+        assertThat(queue, contains("ccc", "dddddd"));
+        assertThat(weight(queue), is(9L));
+    }
+
+    @Test
+    public void weightIsSubtractedOnRemoval() {
+        Queue<String> queue = createQueue(10);
+        offerAll(queue, asList("aaa", "bb", "c"));
+
+        queue.poll();
+        queue.remove("c");
+
+        assertThat(weight(queue), is(2L));
+
+        queue.clear();
+
+        assertThat(weight(queue), is(0L));
+    }
+
+    @Test
+    public void offerAllEvictsByWeight() {
+        Queue<String> queue = createQueue(5);
+        queue.offer("aa");
+
+        queue.addAll(asList("bb", "cc", "dd"));
+
+        assertThat(evicted, contains("aa", "bb"));
+        assertThat(queue, contains("cc", "dd"));
+    }
+
+    @Test
+    public void elemHeavierThanMaxWeightIsEvicted() {
+        Queue<String> queue = createQueue(5);
+        queue.offer("aa");
+
+        queue.offer("bbbbbb");
+
+        assertThat(evicted, contains("aa", "bbbbbb"));
+        assertThat(queue, is(empty()));
+        assertThat(weight(queue), is(0L));
+    }
+
+    @Test
+    public void everyOverweightElemIsPassedToListenerOnce() {
+        Queue<String> queue = createQueue(2);
+
+        offerAll(queue, asList("a", "b", "c", "d", "e"));
+
+        assertThat(evicted, contains("a", "b", "c"));
+    }
+
+    @Test
+    public void listenerMayOfferToQueue() {
+        List<Queue<String>> queueHolder = new ArrayList<>();
+        Queue<String> queue = queueFactory.create(String::length, 2, e -> {
+            evicted.add(e);
+            if (e.equals("a")) {
+                queueHolder.get(0).offer("x");
+            }
+        });
+        queueHolder.add(queue);
+        offerAll(queue, asList("a", "b"));
+
+        queue.offer("c");
+
+        assertThat(evicted, contains("a", "b"));
+        assertThat(queue, contains("c", "x"));
+    }
+
+    @Test
+    public void totalWeightIsKeptAtMultithreading() throws InterruptedException {
+        Queue<String> queue = queueFactory.create(String::length, 100, null);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 2; t++) {
+            executorService.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    queue.offer("x".repeat(i % 10 + 1));
+                }
+            });
+            executorService.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    queue.poll();
+                }
+            });
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        long total = queue.stream().mapToLong(String::length).sum();
+        assertThat(weight(queue), is(total));
+        assertThat(total, is(lessThanOrEqualTo(100L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeWeightIsRejected() {
+        queueFactory.create(e -> -1, 10, null).offer("a");
+    }
+
+    private Queue<String> createQueue(long maxWeight) {
+        return queueFactory.create(String::length, maxWeight, evicted::add);
+    }
+
+    private static long weight(Queue<String> queue) {
+        return (queue instanceof ConcurrentMostRecentlyInsertedQueue)
+                ? ((ConcurrentMostRecentlyInsertedQueue<String>) queue).weight()
+                : ((MostRecentlyInsertedBlockingQueue<String>) queue).weight();
+    }
+
+    @FunctionalInterface
+    interface WeighedQueueFactory {
+        Queue<String> create(Weigher<String> weigher, long maxWeight, EvictionListener<String> evictionListener);
+    }
+}